@@ -0,0 +1,98 @@
+package countydb.bench;
+
+import countydb.County;
+import countydb.MapBackend;
+import countydb.SortedMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the thread-safe map backends under a mix of reads and
+ * writes issued by every available core at once.
+ *
+ * The map is loaded with {@code size} even codes spread evenly over the
+ * five-digit FIPS range, so that every state shard of SHARDED_AVL is used.
+ * Each operation picks a loaded code at random; a write inserts or removes
+ * the absent odd code just above it (keeping the size roughly constant),
+ * and a read looks the loaded code up.
+ *
+ * Run with {@code java -jar target/benchmarks.jar ContentionBenchmark}, and
+ * vary the thread count with {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+  /** Width of the range of county codes. */
+  private static final int CODES = 100000;
+
+  @Param({"10000", "50000"})
+  public int size;
+
+  @Param({"CONCURRENT_AVL", "PERSISTENT_AVL", "SHARDED_AVL", "SKIP_LIST"})
+  public MapBackend backend;
+
+  /** Percentage of operations that update the map. */
+  @Param({"1", "10", "50"})
+  public int writePercent;
+
+  private SortedMap map;
+  private int[] keys;
+  private County[] counties;
+
+  @Setup(Level.Trial)
+  public void load() {
+    if (!backend.isThreadSafe())
+      throw new IllegalArgumentException(backend + " cannot be shared between threads");
+    int gap = (CODES / size) & ~1;                  // even codes with an even gap
+    keys = new int[size];
+    counties = new County[size];
+    map = backend.create();
+    for (int i = 0; i < size; i++) {
+      keys[i] = i * gap;
+      counties[i] = new County(keys[i], i, "County " + keys[i]);
+      map.put(keys[i], counties[i]);
+    }
+  }
+
+  @Benchmark
+  public County mixed() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(size);
+    int r = random.nextInt(100);
+    if (r >= writePercent)
+      return map.get(keys[i]);
+    if ((r & 1) == 0)
+      return map.put(keys[i] + 1, counties[i]);
+    return map.remove(keys[i] + 1);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(ContentionBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,88 @@
+package countydb.bench;
+
+import countydb.AVLTreeMap;
+import countydb.County;
+import countydb.Entry;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The operations exercised by the benchmarks, so that every map
+ * implementation is driven through the same call sites.
+ */
+public interface CountyMapAdapter {
+
+  County get(int key);
+
+  County put(int key, County value);
+
+  County remove(int key);
+
+  /** Returns the least key greater than or equal to the given key (or null). */
+  Integer ceilingKey(int key);
+
+  /** Consumes every entry with a key from fromKey inclusive to toKey exclusive. */
+  void subMap(int fromKey, int toKey, Blackhole bh);
+
+  /** Iterates over all values, returning the total population. */
+  long sumPopulations();
+
+  /**
+   * Returns an empty adapter for the named implementation.
+   * @param name  "AVLTreeMap" or "java.util.TreeMap"
+   */
+  static CountyMapAdapter create(String name) {
+    switch (name) {
+      case "AVLTreeMap": return new AVL();
+      case "java.util.TreeMap": return new Jdk();
+      default: throw new IllegalArgumentException("Unknown map implementation: " + name);
+    }
+  }
+
+  /** Adapter for the project's AVLTreeMap. */
+  final class AVL implements CountyMapAdapter {
+    private final AVLTreeMap map = new AVLTreeMap();
+
+    public County get(int key) { return map.get(key); }
+    public County put(int key, County value) { return map.put(key, value); }
+    public County remove(int key) { return map.remove(key); }
+
+    public Integer ceilingKey(int key) {
+      Entry e = map.ceilingEntry(key);
+      return (e == null ? null : e.getKey());
+    }
+
+    public void subMap(int fromKey, int toKey, Blackhole bh) {
+      for (Entry e : map.subMap(fromKey, toKey))
+        bh.consume(e);
+    }
+
+    public long sumPopulations() {
+      long total = 0;
+      for (County c : map.values())
+        total += c.getPopulation();
+      return total;
+    }
+  }
+
+  /** Adapter for the baseline java.util.TreeMap. */
+  final class Jdk implements CountyMapAdapter {
+    private final java.util.TreeMap<Integer, County> map = new java.util.TreeMap<>();
+
+    public County get(int key) { return map.get(key); }
+    public County put(int key, County value) { return map.put(key, value); }
+    public County remove(int key) { return map.remove(key); }
+    public Integer ceilingKey(int key) { return map.ceilingKey(key); }
+
+    public void subMap(int fromKey, int toKey, Blackhole bh) {
+      for (java.util.Map.Entry<Integer, County> e : map.subMap(fromKey, toKey).entrySet())
+        bh.consume(e);
+    }
+
+    public long sumPopulations() {
+      long total = 0;
+      for (County c : map.values())
+        total += c.getPopulation();
+      return total;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package countydb.bench;
+
+import countydb.County;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput and latency of the county map operations, measured against
+ * java.util.TreeMap as a baseline.
+ *
+ * The map is loaded once per trial with {@code size} distinct even county
+ * codes, in the load order of the key distribution. Every benchmark then
+ * draws its key from a precomputed probe sequence following the same
+ * distribution. Odd codes are never loaded, so a code plus one is always
+ * absent from the map.
+ *
+ * Run with {@code java -jar target/benchmarks.jar -prof gc}, or through
+ * {@link #main}, which adds the GC profiler to report allocation rates.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class CountyMapBenchmark {
+
+  /** Length of the probe sequence (a power of two). */
+  private static final int PROBES = 1 << 20;
+
+  /** Number of entries visited by each subMap range query. */
+  private static final int RANGE = 100;
+
+  @Param({"1000", "100000", "10000000"})
+  public int size;
+
+  @Param({"UNIFORM", "SEQUENTIAL", "ZIPFIAN"})
+  public KeyDistribution distribution;
+
+  @Param({"AVLTreeMap", "java.util.TreeMap"})
+  public String implementation;
+
+  private CountyMapAdapter map;
+  private int[] keys;             // loaded codes in sorted order
+  private County[] counties;      // record for each loaded code
+  private int[] probes;           // indices into keys
+  private int cursor = 0;
+
+  @Setup(Level.Trial)
+  public void load() {
+    Random random = new Random(20140101L);
+    keys = new int[size];
+    counties = new County[size];
+    int code = 1000;
+    for (int i = 0; i < size; i++) {
+      code += 2 + 2 * random.nextInt(4);           // even codes with random gaps
+      keys[i] = code;
+      counties[i] = new County(code, random.nextInt(10000000), "County " + code);
+    }
+    map = CountyMapAdapter.create(implementation);
+    for (int i : distribution.loadOrder(size, random))
+      map.put(keys[i], counties[i]);
+    probes = distribution.probeOrder(size, PROBES, random);
+  }
+
+  /** Returns the next key index of the probe sequence. */
+  private int next() {
+    return probes[cursor++ & (PROBES - 1)];
+  }
+
+  @Benchmark
+  public County get() {
+    return map.get(keys[next()]);
+  }
+
+  /** Replaces the value of an existing key. */
+  @Benchmark
+  public County put() {
+    int i = next();
+    return map.put(keys[i], counties[i]);
+  }
+
+  /** Inserts an absent key and removes it again, keeping the map size constant. */
+  @Benchmark
+  public County insertRemove() {
+    int i = next();
+    map.put(keys[i] + 1, counties[i]);
+    return map.remove(keys[i] + 1);
+  }
+
+  /** Searches for an absent key, so the ceiling is always its successor. */
+  @Benchmark
+  public Integer ceilingEntry() {
+    return map.ceilingKey(keys[next()] + 1);
+  }
+
+  @Benchmark
+  public void subMap(Blackhole bh) {
+    int i = next();
+    map.subMap(keys[i], keys[Math.min(i + RANGE, size - 1)], bh);
+  }
+
+  /** Iterates over every value of the map. */
+  @Benchmark
+  public long values() {
+    return map.sumPopulations();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(CountyMapBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
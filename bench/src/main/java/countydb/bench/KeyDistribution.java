@@ -0,0 +1,88 @@
+package countydb.bench;
+
+import java.util.Random;
+
+/**
+ * The order in which benchmark keys are loaded into a map and then probed.
+ * Keys are identified by their index in the sorted array of loaded codes.
+ */
+public enum KeyDistribution {
+
+  /** Keys are loaded in random order and probed uniformly at random. */
+  UNIFORM,
+
+  /** Keys are loaded in sorted (FIPS) order and probed in sorted order. */
+  SEQUENTIAL,
+
+  /**
+   * Keys are loaded in random order and probed with a Zipf(1) skew, so a
+   * handful of hot counties receive most of the lookups.
+   */
+  ZIPFIAN;
+
+  /**
+   * Returns the order in which the given number of sorted keys are loaded.
+   * @param size    number of keys
+   * @param random  source of randomness
+   * @return permutation of the indices 0..size-1
+   */
+  public int[] loadOrder(int size, Random random) {
+    int[] order = identity(size);
+    if (this != SEQUENTIAL)
+      shuffle(order, random);
+    return order;
+  }
+
+  /**
+   * Returns a sequence of key indices to probe.
+   * @param size    number of keys in the map
+   * @param count   length of the sequence
+   * @param random  source of randomness
+   * @return indices between 0 and size-1
+   */
+  public int[] probeOrder(int size, int count, Random random) {
+    int[] probes = new int[count];
+    switch (this) {
+      case UNIFORM:
+        for (int i = 0; i < count; i++)
+          probes[i] = random.nextInt(size);
+        break;
+      case SEQUENTIAL:
+        for (int i = 0; i < count; i++)
+          probes[i] = i % size;
+        break;
+      case ZIPFIAN:
+        // ranks are mapped onto a random permutation so hot keys are scattered
+        int[] byRank = identity(size);
+        shuffle(byRank, random);
+        for (int i = 0; i < count; i++)
+          probes[i] = byRank[zipfRank(size, random)];
+        break;
+    }
+    return probes;
+  }
+
+  /**
+   * Draws a rank between 0 and size-1 whose probability is roughly
+   * proportional to 1/(rank+1), by inverting the continuous approximation
+   * of the Zipf(1) distribution function, ln(rank+1)/ln(size+1).
+   */
+  private static int zipfRank(int size, Random random) {
+    int rank = (int) Math.pow(size + 1, random.nextDouble()) - 1;
+    return Math.min(Math.max(rank, 0), size - 1);
+  }
+
+  private static int[] identity(int size) {
+    int[] a = new int[size];
+    for (int i = 0; i < size; i++)
+      a[i] = i;
+    return a;
+  }
+
+  private static void shuffle(int[] a, Random random) {
+    for (int i = a.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int t = a[i]; a[i] = a[j]; a[j] = t;
+    }
+  }
+}
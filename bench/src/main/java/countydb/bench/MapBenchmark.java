@@ -0,0 +1,111 @@
+package countydb.bench;
+
+import countydb.AVLTreeMap;
+import countydb.ArrayAVLTreeMap;
+import countydb.County;
+import countydb.IntAVLTreeMap;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A quick timing harness comparing the boxed AVLTreeMap with the
+ * primitive-keyed IntAVLTreeMap and the array-backed ArrayAVLTreeMap,
+ * with AVLTreeMap lookups also timed in batches through getAll.
+ * Usage: java MapBenchmark [records] [rounds]
+ */
+public class MapBenchmark {
+
+	//number of codes looked up by each AVLTreeMap.getAll call
+	private static final int BATCH = 4096;
+
+	public static void main(String[] args)
+	{
+		int n = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+		int rounds = (args.length > 1 ? Integer.parseInt(args[1]) : 5);
+
+		int[] codes = randomCodes(n, 42);
+		County[] counties = new County[n];
+		for(int i = 0; i < n; i++)
+			counties[i] = new County(codes[i], i, "County " + codes[i]);
+
+		int[] probes = randomCodes(n, 7);
+		int[] batch = new int[BATCH];
+		County[] results = new County[BATCH];
+		for(int i = 0; i < n; i += 2)
+			probes[i] = codes[i];		//half of the probes are hits
+
+		for(int r = 1; r <= rounds; r++)
+		{
+			System.out.println("Round " + r + " (" + n + " records)");
+
+			long start = System.nanoTime();
+			AVLTreeMap boxed = new AVLTreeMap();
+			for(int i = 0; i < n; i++)
+				boxed.put(codes[i], counties[i]);
+			report("AVLTreeMap.put", start, n);
+
+			start = System.nanoTime();
+			int boxedHits = 0;
+			for(int i = 0; i < n; i++)
+				if(boxed.get(probes[i]) != null)
+					boxedHits++;
+			report("AVLTreeMap.get", start, n);
+
+			start = System.nanoTime();
+			int batchHits = 0;
+			for(int i = 0; i < n; i += BATCH)
+			{
+				int size = Math.min(BATCH, n - i);
+				System.arraycopy(probes, i, batch, 0, size);
+				batchHits += boxed.getAll(size == BATCH ? batch : Arrays.copyOf(batch, size), results);
+			}
+			report("AVLTreeMap.getAll", start, n);
+
+			start = System.nanoTime();
+			IntAVLTreeMap primitive = new IntAVLTreeMap();
+			for(int i = 0; i < n; i++)
+				primitive.put(codes[i], counties[i]);
+			report("IntAVLTreeMap.put", start, n);
+
+			start = System.nanoTime();
+			int primitiveHits = 0;
+			for(int i = 0; i < n; i++)
+				if(primitive.get(probes[i]) != null)
+					primitiveHits++;
+			report("IntAVLTreeMap.get", start, n);
+
+			start = System.nanoTime();
+			ArrayAVLTreeMap array = new ArrayAVLTreeMap(n);
+			for(int i = 0; i < n; i++)
+				array.put(codes[i], counties[i]);
+			report("ArrayAVLTreeMap.put", start, n);
+
+			start = System.nanoTime();
+			int arrayHits = 0;
+			for(int i = 0; i < n; i++)
+				if(array.get(probes[i]) != null)
+					arrayHits++;
+			report("ArrayAVLTreeMap.get", start, n);
+
+			if(boxedHits != primitiveHits || boxedHits != arrayHits || boxedHits != batchHits)
+				System.out.println("  WARNING: maps disagree on lookups");
+		}
+	}
+
+	//prints the elapsed time per operation since start
+	private static void report(String label, long start, int ops)
+	{
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("  %-20s %8.1f ns/op%n", label, (double) elapsed / ops);
+	}
+
+	//returns n random FIPS-plus-subdivision style codes
+	private static int[] randomCodes(int n, long seed)
+	{
+		Random random = new Random(seed);
+		int[] codes = new int[n];
+		for(int i = 0; i < n; i++)
+			codes[i] = random.nextInt(100000000);
+		return codes;
+	}
+}
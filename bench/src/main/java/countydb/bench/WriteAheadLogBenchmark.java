@@ -0,0 +1,99 @@
+package countydb.bench;
+
+import countydb.County;
+import countydb.WriteAheadLog;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of logging puts to a WriteAheadLog under each sync policy.
+ *
+ * Each trial logs to a fresh file in the temporary directory. With EVERY_OP
+ * every call waits for its record to reach the disk, so the thread count
+ * shows how well group commit shares the fsyncs between callers; with
+ * BATCHED the calls only append to memory and {@code intervalMillis} sets
+ * how often the background thread syncs. The number of records per fsync
+ * is printed at the end of each trial.
+ *
+ * Run with {@code java -jar target/benchmarks.jar WriteAheadLogBenchmark},
+ * and vary the thread count with {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteAheadLogBenchmark {
+
+  /** Number of distinct counties logged. */
+  private static final int COUNTIES = 1024;
+
+  @Param({"EVERY_OP", "BATCHED"})
+  public WriteAheadLog.SyncPolicy policy;
+
+  /** Interval between the syncs of a BATCHED log. */
+  @Param({"10"})
+  public long intervalMillis;
+
+  private Path file;
+  private WriteAheadLog log;
+  private County[] counties;
+
+  @Setup(Level.Trial)
+  public void open() throws IOException {
+    counties = new County[COUNTIES];
+    for (int i = 0; i < COUNTIES; i++)
+      counties[i] = new County(1000 + i, 10 * i, "County " + i);
+    file = Files.createTempFile("countydb", ".wal");
+    log = new WriteAheadLog(file, policy, intervalMillis);
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws IOException {
+    log.close();
+    long syncs = log.getSyncCount();
+    System.out.printf("%n%d records, %d fsyncs, %.1f records per fsync, %d bytes%n",
+                      log.getRecordCount(), syncs,
+                      syncs == 0 ? 0.0 : (double) log.getRecordCount() / syncs,
+                      log.getBytesWritten());
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void logPut() throws IOException {
+    log.logPut(counties[ThreadLocalRandom.current().nextInt(COUNTIES)]);
+  }
+
+  @Benchmark
+  public void logRemove() throws IOException {
+    log.logRemove(counties[ThreadLocalRandom.current().nextInt(COUNTIES)].getCountyCode());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(WriteAheadLogBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,205 @@
+package countydb.cli;
+
+import countydb.AVLTreeMap;
+import countydb.County;
+import countydb.CountySnapshot;
+import countydb.Entry;
+import countydb.ParallelCountyLoader;
+import countydb.WriteAheadLog;
+import java.util.Scanner;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class main {
+
+	//number of records listed at a time by choice 4
+	private static final int PAGE_SIZE = 20;
+
+	public static void main(String[] args) throws IOException
+	{
+		int input = 0;
+		
+		Scanner scan = new Scanner(System.in);
+		
+		//Create the tree using the snapshot, or the file if it has changed since
+		AVLTreeMap tree = createTree("p4small.txt", "p4small.snap");
+		
+		//Reapply the inserts and deletes made in earlier sessions
+		WriteAheadLog log = openLog("p4small.wal", tree);
+		tree.setStatsEnabled(true);
+
+		System.out.println("0. Show Tree\n"
+				+ "1. Search for a record\n"
+				+ "2. Insert a record\n"
+				+ "3. Delete a record\n"
+				+ "4. List all records\n"
+				+ "5. Exit\n"
+				+ "6. Show statistics");
+		
+		while(input != 5)
+		{
+			System.out.println("\nPlease type 1-6 to make a selection");
+			input = scan.nextInt();
+			
+			if(input == 0)
+			{
+				tree.drawTree();
+			}
+			
+			//searches for a record
+			else if(input == 1)
+			{
+				System.out.println("Please type the county/state code you want to search");
+				int code = scan.nextInt();
+			
+				if(!search(code, tree))
+					System.out.println("The code you entered cannot be found!");
+			}
+			//inserts a record into the tree
+			else if(input == 2)
+			{
+				int code;
+				int population;
+				String name;
+				
+				System.out.println("Please type the county/state code, population, and county/state name");
+				code = scan.nextInt();
+				population = scan.nextInt();
+			
+				name = scan.nextLine();
+				name = name.trim();
+				
+				insert(tree, log, code, population, name);
+			}
+			//deletes record from tree
+			else if(input == 3)
+			{
+				System.out.println("Please type the code of record to be deleted");
+				int code = scan.nextInt();
+				
+				delete(tree, log, code);
+			}
+			//shows all the tree records
+			else if(input == 4)
+			{
+				showAll(tree, scan);
+			}
+			else if(input == 5)
+			{
+				log.close();
+				System.out.println("Program will now exit");
+			}
+			//shows the latency, comparison and rotation statistics
+			else if(input == 6)
+			{
+				System.out.println(tree.getStats());
+			}
+			else
+				System.out.println("Please make a valid selection");
+		}
+	}
+
+	//creates the tree at the beginning of the program
+	public static AVLTreeMap createTree(String fileName, String snapshotName) throws IOException
+	{
+		Path file = Paths.get(fileName);
+		Path snapshotFile = Paths.get(snapshotName);
+		CountySnapshot snapshot = new CountySnapshot();
+		
+		if(Files.exists(snapshotFile)
+				&& Files.getLastModifiedTime(snapshotFile).compareTo(Files.getLastModifiedTime(file)) >= 0)
+		{
+			AVLTreeMap avlTree = snapshot.read(snapshotFile);
+			
+			System.out.printf("Restored %d records from snapshot (%.0f records/sec)%n",
+					snapshot.getRecordCount(), snapshot.getRecordsPerSecond());
+			
+			System.out.println("AVLTree has been created\n");
+			return avlTree;
+		}
+		
+		ParallelCountyLoader loader = new ParallelCountyLoader();
+		
+		AVLTreeMap avlTree = loader.load(file);
+		
+		System.out.printf("Loaded %d records (%.0f records/sec)%n",
+				loader.getRecordCount(), loader.getRecordsPerSecond());
+		
+		//save the parsed records so the next start can skip parsing
+		snapshot.write(avlTree, snapshotFile);
+		
+		System.out.println("AVLTree has been created\n");
+		return avlTree;
+	}
+	
+	//opens the log of changes and applies it to the tree
+	public static WriteAheadLog openLog(String fileName, AVLTreeMap avlTree) throws IOException
+	{
+		WriteAheadLog log = new WriteAheadLog(Paths.get(fileName), WriteAheadLog.SyncPolicy.EVERY_OP, 0);
+		
+		long changes = log.replay(avlTree);
+		
+		if(changes > 0)
+			System.out.println("Reapplied " + changes + " logged changes\n");
+		return log;
+	}
+	
+	//searches for the tree if choice is 1
+	public static boolean search(int code, AVLTreeMap avlTree)
+	{
+		County county = avlTree.get(code);
+		
+		if(county != null)
+		{
+				System.out.println(county);
+				return true;
+		}
+		
+		return false;
+	}
+	
+	//adds a record to the tree if choice is 2
+	public static void insert(AVLTreeMap avlTree, WriteAheadLog log, int code, int population, String name) throws IOException
+	{
+		County county = new County(code, population, name);
+		
+		log.logPut(county);
+		avlTree.put(code, county);
+
+		System.out.println("Record has been added");
+	}
+	
+	
+	//removes a record from the tree if the choice is 3
+	public static void delete(AVLTreeMap avlTree, WriteAheadLog log, int code) throws IOException
+	{
+		log.logRemove(code);
+		avlTree.remove(code);
+		
+		System.out.println("Record has been deleted");
+	}
+	
+	//displays the records from the tree a page at a time if the choice is 4
+	public static void showAll(AVLTreeMap avlTree, Scanner scan)
+	{
+		int offset = 0;
+		
+		while(offset < avlTree.size())
+		{
+			//only the records of the current page are visited
+			for(Entry entry : avlTree.page(offset, PAGE_SIZE))
+				System.out.println(entry.getValue());
+			
+			offset += PAGE_SIZE;
+			if(offset >= avlTree.size())
+				break;
+			
+			System.out.println("Showing " + offset + " of " + avlTree.size()
+					+ " records. Type 1 for the next page or 0 to stop");
+			if(scan.nextInt() != 1)
+				break;
+		}
+	}
+}
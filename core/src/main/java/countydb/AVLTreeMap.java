@@ -0,0 +1,437 @@
+/*
+ * Copyright 2014, Michael T. Goodrich, Roberto Tamassia, Michael H. Goldwasser
+ *
+ * Developed for use with the book:
+ *
+ *    Data Structures and Algorithms in Java, Sixth Edition
+ *    Michael T. Goodrich, Roberto Tamassia, and Michael H. Goldwasser
+ *    John Wiley & Sons, 2014
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package countydb;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of a sorted map using an AVL tree.
+ *
+ * Each node also records the number of entries in its subtree, which lets
+ * rank, select and page locate entries by position in logarithmic time.
+ *
+ * @author Eric Zamore
+ * @author Michael T. Goodrich
+ * @author Roberto Tamassia
+ * @author Michael H. Goldwasser
+ */
+public class AVLTreeMap extends TreeMap {
+
+  /** Constructs an empty map using the natural ordering of keys. */
+  public AVLTreeMap() { super(); }
+
+  /**
+   * Constructs an empty map using the given comparator to order keys.
+   * @param comp comparator defining the order of keys in the map
+   */
+  public AVLTreeMap(Comparator comp) { super(comp); }
+
+  //---------------- nested SizedNode class ----------------
+  /**
+   * Tree node also holding the number of entries in its subtree. Subclasses
+   * keeping further subtree data override update.
+   */
+  protected static class SizedNode extends BalanceableBinaryTree.BSTNode {
+    int size;                // number of entries in the subtree
+
+    protected SizedNode(Entry e, LinkedBinaryTree.Node parent,
+                        LinkedBinaryTree.Node leftChild, LinkedBinaryTree.Node rightChild) {
+      super(e, parent, leftChild, rightChild);
+      update();
+    }
+
+    /**
+     * Recomputes the subtree data from the entry and the children.
+     * @return true if the data changed, so that the parent needs updating too
+     */
+    protected boolean update() {
+      int old = size;
+      size = 1 + sizeOf(getLeft()) + sizeOf(getRight());
+      return size != old;
+    }
+  } //----------- end of nested SizedNode class -----------
+
+  /** Returns the number of entries in the subtree rooted at n (0 if n is null). */
+  protected static int sizeOf(LinkedBinaryTree.Node n) {
+    return (n == null ? 0 : ((SizedNode) n).size);
+  }
+
+  /** Creates a tree of SizedNodes. */
+  @Override
+  protected BalanceableBinaryTree createTree() {
+    return new BalanceableBinaryTree() {
+      @Override
+      protected Node createNode(Entry e, Node parent, Node left, Node right) {
+        return newNode(e, parent, left, right);
+      }
+    };
+  }
+
+  /** Creates a node of the tree; subclasses may return a subclass of SizedNode. */
+  protected SizedNode newNode(Entry e, LinkedBinaryTree.Node parent,
+                              LinkedBinaryTree.Node left, LinkedBinaryTree.Node right) {
+    return new SizedNode(e, parent, left, right);
+  }
+
+  // The balancing utilities below are only ever given positions of our own
+  // tree, so they read the node links directly rather than going through the
+  // validating positional methods of the tree.
+
+  /** Returns the height of the given tree position (0 for a missing child). */
+  protected int height(Position p) {
+    return (p == null ? 0 : ((BalanceableBinaryTree.BSTNode) p).getAux());
+  }
+
+  /** Recomputes the height (and subtree data) of the given position based on its children. */
+  protected void recomputeHeight(Position p) {
+    LinkedBinaryTree.Node n = node(p);
+    tree.setAux(p, 1 + Math.max(height(n.getLeft()), height(n.getRight())));
+    ((SizedNode) n).update();
+  }
+
+  /**
+   * Recomputes the subtree data of p and of its ancestors, stopping at the
+   * first one whose data does not change (nothing to do if p is null).
+   */
+  protected void updatePath(Position p) {
+    LinkedBinaryTree.Node walk = node(p);
+    while (walk != null && ((SizedNode) walk).update())
+      walk = walk.getParent();
+  }
+
+  /** Returns whether a position has balance factor between -1 and 1 inclusive. */
+  protected boolean isBalanced(Position p) {
+    LinkedBinaryTree.Node n = node(p);
+    return Math.abs(height(n.getLeft()) - height(n.getRight())) <= 1;
+  }
+
+  /** Returns a child of p with height no smaller than that of the other child. */
+  protected Position tallerChild(Position p) {
+    LinkedBinaryTree.Node n = node(p);
+    int leftHeight = height(n.getLeft());
+    int rightHeight = height(n.getRight());
+    if (leftHeight > rightHeight) return n.getLeft();     // clear winner
+    if (leftHeight < rightHeight) return n.getRight();    // clear winner
+    // equal height children; break tie while matching parent's orientation
+    LinkedBinaryTree.Node parent = n.getParent();
+    if (parent == null) return n.getLeft();        // choice is irrelevant
+    if (n == parent.getLeft()) return n.getLeft(); // return aligned child
+    else return n.getRight();
+  }
+
+  /**
+   * Utility used to rebalance after an insert or removal operation. This traverses the
+   * path upward from p, performing a trinode restructuring when imbalance is found,
+   * continuing until balance is restored.
+   * @return the first ancestor not recomputed (null if the root was reached)
+   */
+  protected Position rebalance(Position p) {
+    int oldHeight, newHeight;
+    do {
+      oldHeight = height(p);                       // not yet recalculated if internal
+      if (!isBalanced(p)) {                        // imbalance detected
+        // perform trinode restructuring, setting p to resulting root,
+        // and recompute new local heights after the restructuring
+        p = restructure(tallerChild(tallerChild(p)));
+        recomputeHeight(node(p).getLeft());
+        recomputeHeight(node(p).getRight());
+      }
+      recomputeHeight(p);
+      newHeight = height(p);
+      p = node(p).getParent();
+    } while (oldHeight != newHeight && p != null);
+    return p;
+  }
+
+  /**
+   * Overrides the TreeMap rebalancing hook that is called after an insertion.
+   * Rebalancing stops once the heights settle, so the subtree data of the
+   * remaining ancestors is refreshed afterwards.
+   */
+  @Override
+  protected void rebalanceInsert(Position p) {
+    updatePath(rebalance(p));
+  }
+
+  /** Overrides the TreeMap rebalancing hook that is called after a deletion. */
+  @Override
+  protected void rebalanceDelete(Position p) {
+    if (p != null)
+      updatePath(rebalance(p));
+  }
+
+  //---------------- bulk construction ----------------
+
+  /**
+   * Builds a map holding the given counties, keyed by county code, in time
+   * linear in their number when they are already sorted by code. Unsorted
+   * input is sorted first. If several counties share a code, the last one
+   * wins, just as if they had been put one at a time in array order.
+   *
+   * The tree is built bottom-up as a perfectly height-balanced tree, with
+   * each node taking the middle record of its range, so no searches or
+   * rotations are performed.
+   * @param counties  the records to load (the array is not modified)
+   * @return a new map holding the records
+   */
+  public static AVLTreeMap bulkLoad(County[] counties) {
+    AVLTreeMap map = new AVLTreeMap();
+    map.buildBalanced(sortedDistinct(counties));
+    return map;
+  }
+
+  /**
+   * Returns the counties sorted by code with only the last record of each
+   * code kept, copying the array only if it is not already in that form.
+   */
+  protected static County[] sortedDistinct(County[] counties) {
+    boolean strictlyIncreasing = true;
+    for (int i = 1; i < counties.length && strictlyIncreasing; i++)
+      strictlyIncreasing = counties[i - 1].getCountyCode() < counties[i].getCountyCode();
+    if (strictlyIncreasing)
+      return counties;
+    County[] sorted = counties.clone();
+    Arrays.sort(sorted, Comparator.comparingInt(County::getCountyCode));  // stable
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (n > 0 && sorted[n - 1].getCountyCode() == sorted[i].getCountyCode())
+        n--;                                     // a later duplicate replaces it
+      sorted[n++] = sorted[i];
+    }
+    return Arrays.copyOf(sorted, n);
+  }
+
+  /**
+   * Fills this (empty) map with the given counties, which must be sorted
+   * by strictly increasing code.
+   * @throws IllegalStateException if the map is not empty
+   */
+  protected void buildBalanced(County[] sorted) throws IllegalStateException {
+    if (!isEmpty()) throw new IllegalStateException("Map is not empty");
+    if (sorted.length > 0)
+      buildSubtree(sorted, 0, sorted.length - 1, null, false);
+  }
+
+  /** Builds the subtree holding sorted[lo..hi] as the given child of parent. */
+  private void buildSubtree(County[] sorted, int lo, int hi,
+                            Position parent, boolean makeLeftChild) {
+    int mid = (lo + hi) >>> 1;
+    Entry entry = new MapEntry(sorted[mid].getCountyCode(), sorted[mid]);
+    Position p;
+    if (parent == null)
+      p = tree.addRoot(entry);
+    else if (makeLeftChild)
+      p = tree.addLeft(parent, entry);
+    else
+      p = tree.addRight(parent, entry);
+    if (lo < mid)
+      buildSubtree(sorted, lo, mid - 1, p, true);
+    if (mid < hi)
+      buildSubtree(sorted, mid + 1, hi, p, false);
+    recomputeHeight(p);                          // children are already complete
+  }
+
+  //---------------- order statistics ----------------
+
+  /**
+   * Returns the number of entries with keys strictly less than the given key.
+   * @param key  a key (which need not be in the map)
+   * @return the rank of key among the keys of the map
+   * @throws IllegalArgumentException if the key is not compatible with the map
+   */
+  public int rank(Integer key) throws IllegalArgumentException {
+    checkKey(key);                               // may throw IllegalArgumentException
+    int rank = 0;
+    LinkedBinaryTree.Node walk = node(root());
+    while (walk != null) {
+      if (compare(key, walk.getElement()) <= 0)
+        walk = walk.getLeft();
+      else {
+        rank += sizeOf(walk.getLeft()) + 1;      // walk and its left subtree are smaller
+        walk = walk.getRight();
+      }
+    }
+    return rank;
+  }
+
+  /** Returns the node holding the entry of the given rank (or null if out of range). */
+  private LinkedBinaryTree.Node selectNode(int k) {
+    if (k < 0 || k >= size()) return null;
+    LinkedBinaryTree.Node walk = node(root());
+    while (true) {
+      int leftSize = sizeOf(walk.getLeft());
+      if (k < leftSize)
+        walk = walk.getLeft();
+      else if (k == leftSize)
+        return walk;
+      else {
+        k -= leftSize + 1;
+        walk = walk.getRight();
+      }
+    }
+  }
+
+  /**
+   * Returns the entry with the k-th smallest key, counting from 0.
+   * @param k  the rank of the entry
+   * @return the entry of rank k (or null if k is negative or not less than size())
+   */
+  public Entry select(int k) {
+    LinkedBinaryTree.Node n = selectNode(k);
+    return (n == null ? null : n.getElement());
+  }
+
+  /**
+   * Returns the entry at the given percentile of the keys, by the
+   * nearest-rank method: the entry of rank ceil(percent / 100 * size()) - 1,
+   * or the first entry for percent 0.
+   * @param percent  the percentile, from 0 to 100
+   * @return the entry at that percentile (or null if the map is empty)
+   * @throws IllegalArgumentException if percent is outside [0, 100]
+   */
+  public Entry percentile(double percent) throws IllegalArgumentException {
+    if (!(percent >= 0 && percent <= 100))
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    int k = (int) Math.ceil(percent / 100 * size()) - 1;
+    return select(Math.max(k, 0));
+  }
+
+  /**
+   * Returns up to limit entries in key order, starting with the entry of
+   * rank offset. Finding the first entry takes logarithmic time and each
+   * further one amortized constant time, so a page of a large map costs
+   * O(log n + limit). The map must not be modified while the page is
+   * being iterated.
+   * @param offset  the rank of the first entry of the page
+   * @param limit  the greatest number of entries on the page
+   * @return iterable of the entries of the page (empty if offset is beyond the map)
+   * @throws IllegalArgumentException if offset or limit is negative
+   */
+  public Iterable<Entry> page(int offset, int limit) throws IllegalArgumentException {
+    if (offset < 0 || limit < 0)
+      throw new IllegalArgumentException("Page offset and limit must not be negative");
+    return () -> new Iterator<Entry>() {
+      private LinkedBinaryTree.Node next = (limit == 0 ? null : selectNode(offset));
+      private int remaining = limit;
+
+      public boolean hasNext() { return next != null; }
+
+      public Entry next() {
+        if (next == null) throw new NoSuchElementException("no more entries");
+        LinkedBinaryTree.Node n = next;
+        next = (--remaining == 0 ? null : successor(n));
+        return n.getElement();
+      }
+
+      public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+    };
+  }
+
+  //---------------- batched lookups ----------------
+
+  /**
+   * Looks up a batch of codes at once, storing the value of codes[i] (or
+   * null if it is not in the map) in results[i].
+   *
+   * The codes are sorted and resolved in a single descent of the tree: at
+   * each node, the codes less than its key go on to the left subtree and the
+   * greater ones to the right, so the top of the tree is visited once per
+   * batch rather than once per code, and the nodes of a subtree are only
+   * visited if some code falls within it. Apart from one array of sorted
+   * codes per call, nothing is allocated. Lookups made this way are not
+   * recorded in the operation statistics.
+   * @param codes  the codes to look up, in any order and possibly repeated
+   * @param results  array receiving the values, at least as long as codes
+   * @return the number of codes found in the map
+   * @throws IllegalArgumentException if results is shorter than codes
+   */
+  public int getAll(int[] codes, County[] results) throws IllegalArgumentException {
+    if (results.length < codes.length)
+      throw new IllegalArgumentException("Result array is shorter than the codes");
+    if (!hasNaturalOrder()) {                    // the probes can only be sorted by code
+      int found = 0;
+      for (int i = 0; i < codes.length; i++)
+        if ((results[i] = get(codes[i])) != null)
+          found++;
+      return found;
+    }
+    long[] probes = new long[codes.length];      // each code with its index in the low half
+    for (int i = 0; i < codes.length; i++)
+      probes[i] = ((long) codes[i] << 32) | i;
+    Arrays.sort(probes);
+    return resolve(node(root()), probes, 0, probes.length, results);
+  }
+
+  /** Resolves the sorted probes[lo..hi) within the subtree rooted at n. */
+  private static int resolve(LinkedBinaryTree.Node n, long[] probes, int lo, int hi,
+                             County[] results) {
+    if (n == null) {                             // none of the codes is in the map
+      for (int i = lo; i < hi; i++)
+        results[(int) probes[i]] = null;
+      return 0;
+    }
+    int key = n.getElement().getKey();
+    int mid = firstProbeAtLeast(probes, lo, hi, key);
+    int end = mid;
+    for (; end < hi && (int) (probes[end] >> 32) == key; end++)
+      results[(int) probes[end]] = n.getElement().getValue();
+    int found = end - mid;
+    if (lo < mid)
+      found += resolve(n.getLeft(), probes, lo, mid, results);
+    if (end < hi)
+      found += resolve(n.getRight(), probes, end, hi, results);
+    return found;
+  }
+
+  /** Returns the index of the first of the sorted probes[lo..hi) whose code is at least key. */
+  private static int firstProbeAtLeast(long[] probes, int lo, int hi, int key) {
+    long target = (long) key << 32;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (probes[mid] < target)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  /** Ensure that current tree structure is valid AVL (for debug use only). */
+  private boolean sanityCheck() {
+    for (Position p : tree.positions()) {
+      if (p.getElement() == null)
+        System.out.println("VIOLATION: Internal node has null entry");
+      else if (height(p) != 1 + Math.max(height(left(p)), height(right(p)))) {
+        System.out.println("VIOLATION: AVL unbalanced node with key " + p.getElement().getKey());
+        dump();
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -21,8 +21,14 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import java.util.List;
+package countydb;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * An abstract base class providing some functionality of the BinaryTree interface.
@@ -88,29 +94,42 @@ public abstract class AbstractBinaryTree extends AbstractTree
     return snapshot;
   }
 
-  /**
-   * Adds positions of the subtree rooted at Position p to the given
-   * snapshot using an inorder traversal
-   * @param p       Position serving as the root of a subtree
-   * @param snapshot  a list to which results are appended
-   */
-  private void inorderSubtree(Position p, List<Position> snapshot) {
-    if (left(p) != null)
-      inorderSubtree(left(p), snapshot);
-    snapshot.add(p);
-    if (right(p) != null)
-      inorderSubtree(right(p), snapshot);
-  }
+  //---------------- nested InorderIterator class ----------------
+  /* Keeps a stack of the positions whose left subtrees are being reported,
+   * so that it uses space proportional to the height of the tree. The tree
+   * must not be modified while the iteration is in progress. */
+  private class InorderIterator implements Iterator<Position> {
+    private final Deque<Position> stack = new ArrayDeque<>();
+
+    InorderIterator() {
+      if (!isEmpty())
+        pushLeftPath(root());
+    }
+
+    /** Pushes p and its chain of left descendants. */
+    private void pushLeftPath(Position p) {
+      for (; p != null; p = left(p))
+        stack.push(p);
+    }
+
+    public boolean hasNext() { return !stack.isEmpty(); }
+
+    public Position next() {
+      if (stack.isEmpty()) throw new NoSuchElementException("no more positions");
+      Position p = stack.pop();               // its left subtree has been reported
+      pushLeftPath(right(p));
+      return p;
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested InorderIterator class -----------
 
   /**
    * Returns an iterable collection of positions of the tree, reported in inorder.
    * @return iterable collection of the tree's positions reported in inorder
    */
   public Iterable<Position> inorder() {
-    List<Position> snapshot = new ArrayList<>();
-    if (!isEmpty())
-      inorderSubtree(root(), snapshot);   // fill the snapshot recursively
-    return snapshot;
+    return InorderIterator::new;
   }
 
   /**
@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 import java.util.Comparator;
 
 /**
@@ -79,6 +81,11 @@ public abstract class AbstractSortedMap
     return comp.compare(a, b);
   }
 
+  /** Returns whether keys are in their natural (increasing int) order. */
+  protected boolean hasNaturalOrder() {
+    return (comp instanceof DefaultComparator);
+  }
+
   /** Determines whether a key is valid. */
   protected boolean checkKey(Integer key) throws IllegalArgumentException {
     try {
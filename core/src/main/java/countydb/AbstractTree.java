@@ -21,9 +21,13 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
+import java.util.ArrayDeque;   // for use as traversal stack
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.List;         // for use as snapshot iterator
-import java.util.ArrayList;    // for use as snapshot iterator
+import java.util.NoSuchElementException;
 
 /**
  * An abstract base class providing some functionality of the Tree interface.
@@ -164,68 +168,120 @@ public abstract class AbstractTree implements Tree {
   @Override
   public Iterable<Position> positions() { return preorder(); }
 
-  /**
-   * Adds positions of the subtree rooted at Position p to the given
-   * snapshot using a preorder traversal
-   * @param p       Position serving as the root of a subtree
-   * @param snapshot  a list to which results are appended
-   */
-  private void preorderSubtree(Position p, List<Position> snapshot) {
-    snapshot.add(p);                       // for preorder, we add position p before exploring subtrees
-    for (Position c : children(p))
-      preorderSubtree(c, snapshot);
-  }
+  // The traversals below are lazy: each position is found when the iterator
+  // reaches it, using space proportional to the height of the tree (or, for
+  // breadth-first order, to its width) rather than to its size. The tree must
+  // not be modified while such an iteration is in progress.
+
+  //---------------- nested PreorderIterator class ----------------
+  /* Keeps a stack holding, for each position on the path to the last one
+   * reported, the iterator over its remaining children. */
+  private class PreorderIterator implements Iterator<Position> {
+    private final Deque<Iterator<Position>> stack = new ArrayDeque<>();
+
+    PreorderIterator() {
+      if (!isEmpty())
+        stack.push(Collections.singletonList(root()).iterator());
+    }
+
+    public boolean hasNext() {
+      while (!stack.isEmpty() && !stack.peek().hasNext())
+        stack.pop();                          // subtree fully reported
+      return !stack.isEmpty();
+    }
+
+    public Position next() {
+      if (!hasNext()) throw new NoSuchElementException("no more positions");
+      Position p = stack.peek().next();
+      stack.push(children(p).iterator());     // explore p's subtrees next
+      return p;
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested PreorderIterator class -----------
 
   /**
    * Returns an iterable collection of positions of the tree, reported in preorder.
    * @return iterable collection of the tree's positions in preorder
    */
   public Iterable<Position> preorder() {
-    List<Position> snapshot = new ArrayList<>();
-    if (!isEmpty())
-      preorderSubtree(root(), snapshot);   // fill the snapshot recursively
-    return snapshot;
+    return PreorderIterator::new;
   }
 
-  /**
-   * Adds positions of the subtree rooted at Position p to the given
-   * snapshot using a postorder traversal
-   * @param p       Position serving as the root of a subtree
-   * @param snapshot  a list to which results are appended
-   */
-  private void postorderSubtree(Position p, List<Position> snapshot) {
-    for (Position c : children(p))
-      postorderSubtree(c, snapshot);
-    snapshot.add(p);                       // for postorder, we add position p after exploring subtrees
-  }
+  //---------------- nested PostorderIterator class ----------------
+  /* Keeps a stack of the positions on the path to the next one to report,
+   * each with the iterator over its children not yet explored. */
+  private class PostorderIterator implements Iterator<Position> {
+    private final Deque<Position> path = new ArrayDeque<>();
+    private final Deque<Iterator<Position>> pending = new ArrayDeque<>();
+
+    PostorderIterator() {
+      if (!isEmpty())
+        descend(root());
+    }
+
+    /** Pushes p and its first descendants down to the first leaf in postorder. */
+    private void descend(Position p) {
+      while (true) {
+        Iterator<Position> children = children(p).iterator();
+        path.push(p);
+        pending.push(children);
+        if (!children.hasNext())
+          return;
+        p = children.next();
+      }
+    }
+
+    public boolean hasNext() { return !path.isEmpty(); }
+
+    public Position next() {
+      if (path.isEmpty()) throw new NoSuchElementException("no more positions");
+      Position p = path.pop();                // all of p's children have been reported
+      pending.pop();
+      if (!pending.isEmpty() && pending.peek().hasNext())
+        descend(pending.peek().next());       // continue with p's next sibling
+      return p;
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested PostorderIterator class -----------
 
   /**
    * Returns an iterable collection of positions of the tree, reported in postorder.
    * @return iterable collection of the tree's positions in postorder
    */
   public Iterable<Position> postorder() {
-    List<Position> snapshot = new ArrayList<>();
-    if (!isEmpty())
-      postorderSubtree(root(), snapshot);   // fill the snapshot recursively
-    return snapshot;
+    return PostorderIterator::new;
   }
 
+  //---------------- nested BreadthFirstIterator class ----------------
+  /* Keeps the fringe of positions whose parents have been reported. */
+  private class BreadthFirstIterator implements Iterator<Position> {
+    private final Queue fringe = new LinkedQueue();
+
+    BreadthFirstIterator() {
+      if (!isEmpty())
+        fringe.enqueue(root());               // start with the root
+    }
+
+    public boolean hasNext() { return !fringe.isEmpty(); }
+
+    public Position next() {
+      if (fringe.isEmpty()) throw new NoSuchElementException("no more positions");
+      Position p = fringe.dequeue();          // remove from front of the queue
+      for (Position c : children(p))
+        fringe.enqueue(c);                    // add children to back of queue
+      return p;
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested BreadthFirstIterator class -----------
+
   /**
    * Returns an iterable collection of positions of the tree in breadth-first order.
    * @return iterable collection of the tree's positions in breadth-first order
    */
   public Iterable<Position> breadthfirst() {
-    List<Position> snapshot = new ArrayList<>();
-    if (!isEmpty()) {
-      Queue fringe = new LinkedQueue();
-      fringe.enqueue(root());                 // start with the root
-      while (!fringe.isEmpty()) {
-        Position p = fringe.dequeue();     // remove from front of the queue
-        snapshot.add(p);                      // report this position
-        for (Position c : children(p))
-          fringe.enqueue(c);                  // add children to back of queue
-      }
-    }
-    return snapshot;
+    return BreadthFirstIterator::new;
   }
 }
@@ -0,0 +1,568 @@
+package countydb;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of a sorted map using an AVL tree whose nodes live in
+ * parallel int arrays rather than in linked node objects.
+ *
+ * A node is an index (a "slot") into the key, left, right, parent and
+ * height arrays, and its value is stored at the same index of a value
+ * array. Slot 0 is reserved as the nil node, with height 0, so that child
+ * and parent links never need to be null-checked when computing heights.
+ * Removed slots are chained through the left array into a free list and
+ * reused by later insertions. Entries reported by the navigation and
+ * iteration methods are snapshots created on demand.
+ */
+public class ArrayAVLTreeMap extends AbstractSortedMap {
+
+  /** Index of the nil node, used in place of a null link. */
+  protected static final int NIL = 0;
+
+  /** Default number of slots allocated by the no-argument constructor. */
+  private static final int DEFAULT_CAPACITY = 16;
+
+  // parallel node storage
+  protected int[] key;
+  protected int[] left;
+  protected int[] right;
+  protected int[] parent;
+  protected int[] height;
+  private County[] values;
+
+  /** The root slot of the tree (NIL if the map is empty). */
+  protected int root = NIL;
+
+  /** The number of entries in the map. */
+  private int size = 0;
+
+  /** The next never-used slot. */
+  private int nextSlot = 1;
+
+  /** Head of the free list of removed slots, chained through left (NIL if empty). */
+  private int freeHead = NIL;
+
+  /** Constructs an empty map ordered by county code. */
+  public ArrayAVLTreeMap() { this(DEFAULT_CAPACITY); }
+
+  /**
+   * Constructs an empty map with room for the given number of entries
+   * before the node arrays must grow.
+   * @param capacity  expected number of entries
+   */
+  public ArrayAVLTreeMap(int capacity) {
+    super();
+    int slots = Math.max(capacity, 1) + 1;       // one extra for the nil slot
+    key = new int[slots];
+    left = new int[slots];
+    right = new int[slots];
+    parent = new int[slots];
+    height = new int[slots];
+    growValues(slots);
+  }
+
+  /**
+   * Returns the number of entries in the map.
+   * @return number of entries in the map
+   */
+  @Override
+  public int size() { return size; }
+
+  //---------------- value storage hooks ----------------
+
+  /** Stores the value for the given slot. Subclasses may keep values elsewhere. */
+  protected void storeValue(int slot, County value) { values[slot] = value; }
+
+  /** Returns the value stored for the given slot. */
+  protected County loadValue(int slot) { return values[slot]; }
+
+  /** Moves the value of one slot to another, leaving the source slot's value undefined. */
+  protected void moveValue(int from, int to) { values[to] = values[from]; }
+
+  /** Releases the value of a slot that is being freed. */
+  protected void clearValue(int slot) { values[slot] = null; }
+
+  /**
+   * Grows the value storage to hold the given number of slots. Called by the
+   * constructor to allocate it, before any subclass fields are initialized.
+   */
+  protected void growValues(int capacity) {
+    values = (values == null ? new County[capacity] : Arrays.copyOf(values, capacity));
+  }
+
+  //---------------- slot management ----------------
+
+  /** Returns a free slot initialized as a leaf holding the given key. */
+  private int allocate(int k, int p) {
+    int slot;
+    if (freeHead != NIL) {                       // reuse a removed slot
+      slot = freeHead;
+      freeHead = left[slot];
+    } else {
+      if (nextSlot == key.length)
+        grow();
+      slot = nextSlot++;
+    }
+    key[slot] = k;
+    left[slot] = right[slot] = NIL;
+    parent[slot] = p;
+    height[slot] = 1;
+    return slot;
+  }
+
+  /**
+   * Returns a free slot holding the given key and value, ready to be linked
+   * below p. If the value cannot be stored, the slot goes back to the free
+   * list, so the tree is left as it was.
+   */
+  private int allocateLeaf(int k, int p, County value) {
+    int slot = allocate(k, p);
+    try {
+      storeValue(slot, value);
+    } catch (RuntimeException e) {
+      free(slot);
+      throw e;
+    }
+    return slot;
+  }
+
+  /** Returns the given slot to the free list. */
+  private void free(int slot) {
+    clearValue(slot);
+    right[slot] = parent[slot] = NIL;
+    height[slot] = 0;
+    left[slot] = freeHead;
+    freeHead = slot;
+  }
+
+  /** Doubles the capacity of the node arrays. */
+  private void grow() {
+    int capacity = key.length * 2;
+    key = Arrays.copyOf(key, capacity);
+    left = Arrays.copyOf(left, capacity);
+    right = Arrays.copyOf(right, capacity);
+    parent = Arrays.copyOf(parent, capacity);
+    height = Arrays.copyOf(height, capacity);
+    growValues(capacity);
+  }
+
+  /** Unboxes a key, rejecting null in the same way as checkKey. */
+  private static int keyOf(Integer k) throws IllegalArgumentException {
+    if (k == null) throw new IllegalArgumentException("Incompatible key");
+    return k;
+  }
+
+  /** Returns a snapshot entry for the given slot (or null for NIL). */
+  private Entry entryOf(int slot) {
+    return (slot == NIL ? null : new MapEntry(key[slot], loadValue(slot)));
+  }
+
+  //---------------- map operations ----------------
+
+  /**
+   * Returns the slot having the given key (or NIL if no such slot exists).
+   * @param k  a target key
+   * @return slot holding k, or NIL if k is not in the map
+   */
+  protected int search(int k) {
+    int walk = root;
+    while (walk != NIL) {
+      int walkKey = key[walk];
+      if (k < walkKey)
+        walk = left[walk];
+      else if (k > walkKey)
+        walk = right[walk];
+      else
+        return walk;                     // key found
+    }
+    return NIL;                          // key not found
+  }
+
+  /** Returns the slot with the minimal key in the subtree rooted at p. */
+  protected int treeMin(int p) {
+    while (left[p] != NIL)
+      p = left[p];
+    return p;
+  }
+
+  /** Returns the slot with the maximal key in the subtree rooted at p. */
+  protected int treeMax(int p) {
+    while (right[p] != NIL)
+      p = right[p];
+    return p;
+  }
+
+  /** Returns the in-order successor of slot p (or NIL if p holds the greatest key). */
+  protected int successor(int p) {
+    if (right[p] != NIL)
+      return treeMin(right[p]);
+    while (parent[p] != NIL && p == right[parent[p]])
+      p = parent[p];
+    return parent[p];
+  }
+
+  /** Returns the in-order predecessor of slot p (or NIL if p holds the least key). */
+  protected int predecessor(int p) {
+    if (left[p] != NIL)
+      return treeMax(left[p]);
+    while (parent[p] != NIL && p == left[parent[p]])
+      p = parent[p];
+    return parent[p];
+  }
+
+  /**
+   * Returns the value associated with the specified key, or null if no such entry exists.
+   * @param k  the key whose associated value is to be returned
+   * @return the associated value, or null if no such entry exists
+   */
+  public County get(int k) {
+    int p = search(k);
+    return (p == NIL ? null : loadValue(p));
+  }
+
+  @Override
+  public County get(Integer k) throws IllegalArgumentException {
+    return get(keyOf(k));
+  }
+
+  /**
+   * Associates the given value with the given key. If an entry with
+   * the key was already in the map, this replaced the previous value
+   * with the new one and returns the old value. Otherwise, a new
+   * entry is added and null is returned.
+   * @param k      key with which the specified value is to be associated
+   * @param value  value to be associated with the specified key
+   * @return the previous value associated with the key (or null, if no such entry)
+   */
+  public County put(int k, County value) {
+    if (root == NIL) {                          // first entry becomes the root
+      root = allocateLeaf(k, NIL, value);
+      size = 1;
+      return null;
+    }
+    int walk = root;
+    while (true) {
+      int walkKey = key[walk];
+      if (k < walkKey) {
+        if (left[walk] == NIL) {                // key is new; attach as left child
+          int slot = allocateLeaf(k, walk, value);  // (may grow the arrays)
+          left[walk] = slot;
+          break;
+        }
+        walk = left[walk];
+      } else if (k > walkKey) {
+        if (right[walk] == NIL) {               // key is new; attach as right child
+          int slot = allocateLeaf(k, walk, value);
+          right[walk] = slot;
+          break;
+        }
+        walk = right[walk];
+      } else {                                  // replacing existing key
+        County old = loadValue(walk);
+        storeValue(walk, value);
+        return old;
+      }
+    }
+    size++;
+    rebalance(walk);
+    return null;
+  }
+
+  @Override
+  public County put(Integer k, County value) throws IllegalArgumentException {
+    return put(keyOf(k), value);
+  }
+
+  /**
+   * Removes the entry with the specified key, if present, and returns
+   * its associated value. Otherwise does nothing and returns null.
+   * @param k  the key whose entry is to be removed from the map
+   * @return the previous value associated with the removed key, or null if no such entry exists
+   */
+  public County remove(int k) {
+    int p = search(k);
+    if (p == NIL) return null;                  // key not found
+    County old = loadValue(p);
+    if (left[p] != NIL && right[p] != NIL) {    // both children present
+      int replacement = treeMax(left[p]);
+      key[p] = key[replacement];
+      moveValue(replacement, p);
+      p = replacement;
+    } // now p has at most one child
+    int child = (left[p] != NIL ? left[p] : right[p]);
+    int above = parent[p];
+    if (child != NIL)
+      parent[child] = above;                    // child's grandparent becomes its parent
+    if (above == NIL)
+      root = child;                             // child becomes root
+    else if (p == left[above])
+      left[above] = child;
+    else
+      right[above] = child;
+    free(p);
+    size--;
+    if (above != NIL)
+      rebalance(above);
+    return old;
+  }
+
+  @Override
+  public County remove(Integer k) throws IllegalArgumentException {
+    return remove(keyOf(k));
+  }
+
+  //---------------- AVL balancing ----------------
+
+  /** Recomputes the height of slot p based on its children's heights. */
+  private void recomputeHeight(int p) {
+    height[p] = 1 + Math.max(height[left[p]], height[right[p]]);
+  }
+
+  /** Returns a child of p with height no smaller than that of the other child. */
+  private int tallerChild(int p) {
+    int lh = height[left[p]], rh = height[right[p]];
+    if (lh > rh) return left[p];                   // clear winner
+    if (lh < rh) return right[p];                  // clear winner
+    // equal height children; break tie while matching parent's orientation
+    if (parent[p] == NIL || p == left[parent[p]]) return left[p];
+    else return right[p];
+  }
+
+  /** Relinks a parent slot with its oriented child slot (child may be NIL). */
+  private void relink(int above, int child, boolean makeLeftChild) {
+    if (child != NIL)
+      parent[child] = above;
+    if (makeLeftChild)
+      left[above] = child;
+    else
+      right[above] = child;
+  }
+
+  /** Rotates slot x above its parent. Caller should ensure that x is not the root. */
+  private void rotate(int x) {
+    int y = parent[x];
+    int z = parent[y];                             // grandparent (possibly NIL)
+    if (z == NIL) {
+      root = x;                                    // x becomes root of the tree
+      parent[x] = NIL;
+    } else
+      relink(z, x, y == left[z]);                  // x becomes direct child of z
+    // now rotate x and y, including transfer of middle subtree
+    if (x == left[y]) {
+      relink(y, right[x], true);                   // x's right child becomes y's left
+      relink(x, y, false);                         // y becomes x's right child
+    } else {
+      relink(y, left[x], false);                   // x's left child becomes y's right
+      relink(x, y, true);                          // y becomes left child of x
+    }
+  }
+
+  /** Performs a trinode restructuring of x with its parent and grandparent. */
+  private int restructure(int x) {
+    int y = parent[x];
+    int z = parent[y];
+    if ((x == right[y]) == (y == right[z])) {      // matching alignments
+      rotate(y);                                   // single rotation (of y)
+      return y;                                    // y is new subtree root
+    } else {                                       // opposite alignments
+      rotate(x);                                   // double rotation (of x)
+      rotate(x);
+      return x;                                    // x is new subtree root
+    }
+  }
+
+  /**
+   * Traverses the path upward from p, performing a trinode restructuring
+   * when imbalance is found, continuing until balance is restored.
+   */
+  private void rebalance(int p) {
+    int oldHeight, newHeight;
+    do {
+      oldHeight = height[p];
+      if (Math.abs(height[left[p]] - height[right[p]]) > 1) { // imbalance detected
+        p = restructure(tallerChild(tallerChild(p)));
+        recomputeHeight(left[p]);
+        recomputeHeight(right[p]);
+      }
+      recomputeHeight(p);
+      newHeight = height[p];
+      p = parent[p];
+    } while (oldHeight != newHeight && p != NIL);
+  }
+
+  //---------------- SortedMap behaviors ----------------
+
+  @Override
+  public Entry firstEntry() {
+    return (root == NIL ? null : entryOf(treeMin(root)));
+  }
+
+  @Override
+  public Entry lastEntry() {
+    return (root == NIL ? null : entryOf(treeMax(root)));
+  }
+
+  /** Returns the entry with least key greater than or equal to the given key. */
+  public Entry ceilingEntry(int k) {
+    int walk = root, best = NIL;
+    while (walk != NIL) {
+      if (k < key[walk]) { best = walk; walk = left[walk]; }
+      else if (k > key[walk]) walk = right[walk];
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry ceilingEntry(Integer k) throws IllegalArgumentException {
+    return ceilingEntry(keyOf(k));
+  }
+
+  /** Returns the entry with greatest key less than or equal to the given key. */
+  public Entry floorEntry(int k) {
+    int walk = root, best = NIL;
+    while (walk != NIL) {
+      if (k > key[walk]) { best = walk; walk = right[walk]; }
+      else if (k < key[walk]) walk = left[walk];
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry floorEntry(Integer k) throws IllegalArgumentException {
+    return floorEntry(keyOf(k));
+  }
+
+  /** Returns the entry with greatest key strictly less than the given key. */
+  public Entry lowerEntry(int k) {
+    int walk = root, best = NIL;
+    while (walk != NIL) {
+      if (key[walk] < k) { best = walk; walk = right[walk]; }
+      else walk = left[walk];
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry lowerEntry(Integer k) throws IllegalArgumentException {
+    return lowerEntry(keyOf(k));
+  }
+
+  /** Returns the entry with least key strictly greater than the given key. */
+  public Entry higherEntry(int k) {
+    int walk = root, best = NIL;
+    while (walk != NIL) {
+      if (key[walk] > k) { best = walk; walk = left[walk]; }
+      else walk = right[walk];
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry higherEntry(Integer k) throws IllegalArgumentException {
+    return higherEntry(keyOf(k));
+  }
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map.
+   * The entries are found as the iteration proceeds, so the map must not
+   * be modified while an iteration is in progress.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    return () -> new EntryIterator(root == NIL ? NIL : treeMin(root), AFTER_ALL, false);
+  }
+
+  /** A bound above every int key, for iterations without an upper limit. */
+  private static final long AFTER_ALL = Integer.MAX_VALUE + 1L;
+
+  //---------------- nested EntryIterator class ----------------
+  /**
+   * Reports the entries from a start slot, following successor links up to
+   * an exclusive upper bound (or, if descending, predecessor links down to
+   * an inclusive lower bound).
+   */
+  private class EntryIterator implements Iterator<Entry> {
+    private int next;
+    private final long bound;
+    private final boolean descending;
+
+    EntryIterator(int start, long bound, boolean descending) {
+      this.bound = bound;
+      this.descending = descending;
+      next = start;
+      trim();
+    }
+
+    /** Ends the iteration once the next slot is beyond the bound. */
+    private void trim() {
+      if (next != NIL && (descending ? key[next] < bound : key[next] >= bound))
+        next = NIL;
+    }
+
+    public boolean hasNext() { return next != NIL; }
+
+    public Entry next() {
+      if (next == NIL) throw new NoSuchElementException("no more entries");
+      int p = next;
+      next = (descending ? predecessor(p) : successor(p));
+      trim();
+      return entryOf(p);
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested EntryIterator class -----------
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * Each iteration starts at the ceiling of <code>fromKey</code> and walks
+   * successors until <code>toKey</code>, taking O(log n + k) time for k
+   * entries. The map must not be modified while an iteration is in progress.
+   * @return iterable with keys in desired range
+   */
+  public Iterable<Entry> subMap(int fromKey, int toKey) {
+    return () -> {
+      int p = root, start = NIL;                 // locate ceiling slot of fromKey
+      while (p != NIL) {
+        if (key[p] < fromKey) p = right[p];
+        else { start = p; p = left[p]; }
+      }
+      return new EntryIterator(start, toKey, false);
+    };
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key. Each iteration starts below <code>toKey</code>
+   * and walks predecessors down to <code>fromKey</code>.
+   * @return iterable with keys in desired range, greatest first
+   */
+  public Iterable<Entry> descendingSubMap(int fromKey, int toKey) {
+    return () -> {
+      int p = root, start = NIL;                 // locate lower slot of toKey
+      while (p != NIL) {
+        if (key[p] >= toKey) p = left[p];
+        else { start = p; p = right[p]; }
+      }
+      return new EntryIterator(start, fromKey, true);
+    };
+  }
+
+  @Override
+  public Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    return descendingSubMap(keyOf(fromKey), keyOf(toKey));
+  }
+
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    return subMap(keyOf(fromKey), keyOf(toKey));
+  }
+}
@@ -0,0 +1,198 @@
+package countydb;
+
+/**
+ * An AVL tree map whose nodes also record, for their subtree, the number
+ * of entries and the sum, minimum and maximum of the populations, so that
+ * these can be answered for any key range in logarithmic time.
+ *
+ * The aggregates are kept up to date by the same hooks that maintain the
+ * subtree sizes of AVLTreeMap, so entry counts are those sizes. Entries
+ * with a null value count as entries but contribute no population.
+ */
+public class AugmentedAVLTreeMap extends AVLTreeMap {
+
+  //---------------- nested AggregateNode class ----------------
+  /**
+   * Tree node also holding the aggregates of its subtree. The SizedNode
+   * constructor computes them through update, so the fields must not have
+   * initializers, which would run afterwards and overwrite them.
+   */
+  protected static class AggregateNode extends SizedNode {
+    long sum;                // sum of the populations in the subtree
+    int min;                 // least population in the subtree (MAX_VALUE if none)
+    int max;                 // greatest population in the subtree (MIN_VALUE if none)
+
+    AggregateNode(Entry e, LinkedBinaryTree.Node parent,
+                  LinkedBinaryTree.Node leftChild, LinkedBinaryTree.Node rightChild) {
+      super(e, parent, leftChild, rightChild);
+    }
+
+    /** Recomputes the aggregates from the entry and the children's aggregates. */
+    @Override
+    protected boolean update() {
+      boolean changed = super.update();
+      long oldSum = sum;
+      int oldMin = min, oldMax = max;
+      County c = (getElement() == null ? null : getElement().getValue());
+      sum = (c == null ? 0 : c.getPopulation());
+      min = (c == null ? Integer.MAX_VALUE : c.getPopulation());
+      max = (c == null ? Integer.MIN_VALUE : c.getPopulation());
+      add((AggregateNode) getLeft());
+      add((AggregateNode) getRight());
+      return changed || sum != oldSum || min != oldMin || max != oldMax;
+    }
+
+    /** Adds the aggregates of a child subtree (which may be null). */
+    private void add(AggregateNode child) {
+      if (child == null) return;
+      sum += child.sum;
+      min = Math.min(min, child.min);
+      max = Math.max(max, child.max);
+    }
+  } //----------- end of nested AggregateNode class -----------
+
+  /** Constructs an empty map using the natural ordering of keys. */
+  public AugmentedAVLTreeMap() { super(); }
+
+  /** Creates the nodes of the tree as AggregateNodes. */
+  @Override
+  protected SizedNode newNode(Entry e, LinkedBinaryTree.Node parent,
+                              LinkedBinaryTree.Node left, LinkedBinaryTree.Node right) {
+    return new AggregateNode(e, parent, left, right);
+  }
+
+  /**
+   * Replaces the entry of a position, refreshing the aggregates above it: a
+   * new value changes the populations even though the sizes stay the same.
+   */
+  @Override
+  protected void set(Position p, Entry e) {
+    super.set(p, e);
+    updatePath(p);
+  }
+
+  /**
+   * Builds a map holding the given counties, keyed by county code, in the
+   * same way as {@link AVLTreeMap#bulkLoad}.
+   * @param counties  the records to load (the array is not modified)
+   * @return a new map holding the records
+   */
+  public static AugmentedAVLTreeMap bulkLoad(County[] counties) {
+    AugmentedAVLTreeMap map = new AugmentedAVLTreeMap();
+    map.buildBalanced(sortedDistinct(counties));
+    return map;
+  }
+
+  //---------------- range aggregates ----------------
+
+  /** Accumulates the aggregates of the entries of a key range. */
+  private static final class Accumulator {
+    int count = 0;
+    long sum = 0;
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+
+    void addEntry(Entry e) {
+      count++;
+      County c = e.getValue();
+      if (c != null) {
+        sum += c.getPopulation();
+        min = Math.min(min, c.getPopulation());
+        max = Math.max(max, c.getPopulation());
+      }
+    }
+
+    void addSubtree(LinkedBinaryTree.Node n) {
+      if (n == null) return;
+      AggregateNode a = (AggregateNode) n;
+      count += a.size;
+      sum += a.sum;
+      min = Math.min(min, a.min);
+      max = Math.max(max, a.max);
+    }
+  }
+
+  /**
+   * Combines the aggregates of the entries with keys from fromKey inclusive
+   * to toKey exclusive, visiting O(log n) nodes: the search paths for the two
+   * keys, and whole subtrees hanging between them.
+   */
+  private Accumulator aggregate(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    checkKey(fromKey);                           // may throw IllegalArgumentException
+    checkKey(toKey);                             // may throw IllegalArgumentException
+    Accumulator acc = new Accumulator();
+    if (compare(fromKey, toKey) >= 0)
+      return acc;
+    LinkedBinaryTree.Node split = node(root());
+    while (split != null) {                      // find where the two search paths diverge
+      if (compare(split.getElement(), toKey) >= 0)
+        split = split.getLeft();
+      else if (compare(split.getElement(), fromKey) < 0)
+        split = split.getRight();
+      else
+        break;                                   // fromKey <= split < toKey
+    }
+    if (split == null)
+      return acc;
+    acc.addEntry(split.getElement());
+    for (LinkedBinaryTree.Node walk = split.getLeft(); walk != null; ) {
+      if (compare(walk.getElement(), fromKey) >= 0) {
+        acc.addEntry(walk.getElement());         // walk and its right subtree are in range
+        acc.addSubtree(walk.getRight());
+        walk = walk.getLeft();
+      } else
+        walk = walk.getRight();
+    }
+    for (LinkedBinaryTree.Node walk = split.getRight(); walk != null; ) {
+      if (compare(walk.getElement(), toKey) < 0) {
+        acc.addEntry(walk.getElement());         // walk and its left subtree are in range
+        acc.addSubtree(walk.getLeft());
+        walk = walk.getRight();
+      } else
+        walk = walk.getLeft();
+    }
+    return acc;
+  }
+
+  /**
+   * Returns the number of entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return the number of entries in the range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  public int countInRange(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    return aggregate(fromKey, toKey).count;
+  }
+
+  /**
+   * Returns the total population of the counties with codes in the range
+   * from <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return the sum of the populations in the range (0 if it is empty)
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  public long populationSum(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    return aggregate(fromKey, toKey).sum;
+  }
+
+  /**
+   * Returns the least population of the counties with codes in the range
+   * from <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return the least population in the range (or null if it holds no county)
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  public Integer populationMin(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    Accumulator acc = aggregate(fromKey, toKey);
+    return (acc.min > acc.max ? null : acc.min);
+  }
+
+  /**
+   * Returns the greatest population of the counties with codes in the range
+   * from <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return the greatest population in the range (or null if it holds no county)
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  public Integer populationMax(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    Accumulator acc = aggregate(fromKey, toKey);
+    return (acc.min > acc.max ? null : acc.max);
+  }
+}
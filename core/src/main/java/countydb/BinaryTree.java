@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 /**
  * An interface for a binary tree, in which each node has at most two children.
  *
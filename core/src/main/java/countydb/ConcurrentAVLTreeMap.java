@@ -0,0 +1,249 @@
+package countydb;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe sorted map backed by an AVLTreeMap and guarded by a
+ * read-write lock.
+ *
+ * Lookups (get, the navigation methods, entrySet and subMap) only take the
+ * read lock, so any number of them may run at the same time; put and remove
+ * take the write lock and run alone. The searches of an AVL tree never
+ * modify it, and the instrumentation of the underlying map is kept per
+ * thread, so concurrent readers do not write to any shared state.
+ *
+ * The iterables returned by entrySet, keySet, values and subMap are copies
+ * made under the read lock, so they may be traversed while other threads
+ * update the map.
+ */
+public class ConcurrentAVLTreeMap extends AbstractMap implements SortedMap {
+
+  private final AVLTreeMap map;
+  private final Lock readLock;
+  private final Lock writeLock;
+
+  /** Constructs an empty map using the natural ordering of keys. */
+  public ConcurrentAVLTreeMap() { this(new AVLTreeMap()); }
+
+  /**
+   * Constructs a map guarding the given tree, for instance one built by
+   * AVLTreeMap.bulkLoad. The tree must not be used directly afterwards.
+   * @param map  the tree holding the entries
+   */
+  public ConcurrentAVLTreeMap(AVLTreeMap map) { this(map, false); }
+
+  /**
+   * Constructs a map guarding the given tree.
+   * @param map  the tree holding the entries
+   * @param fair  whether the lock grants access in arrival order, so that a
+   *              steady stream of readers cannot starve a writer
+   */
+  public ConcurrentAVLTreeMap(AVLTreeMap map, boolean fair) {
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock(fair);
+    this.map = map;
+    readLock = lock.readLock();
+    writeLock = lock.writeLock();
+  }
+
+  @Override
+  public int size() {
+    readLock.lock();
+    try {
+      return map.size();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return map.get(key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    writeLock.lock();
+    try {
+      return map.put(key, value);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    writeLock.lock();
+    try {
+      return map.remove(key);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry firstEntry() {
+    readLock.lock();
+    try {
+      return map.firstEntry();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry lastEntry() {
+    readLock.lock();
+    try {
+      return map.lastEntry();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return map.ceilingEntry(key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return map.floorEntry(key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return map.lowerEntry(key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return map.higherEntry(key);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of all key-value entries of the map, in key order.
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    readLock.lock();
+    try {
+      return copy(map.entrySet(), map.size());
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of the entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return iterable with keys in desired range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return copy(map.subMap(fromKey, toKey), countInRange(fromKey, toKey));
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Returns the number of entries with keys from fromKey inclusive to toKey exclusive. */
+  private int countInRange(Integer fromKey, Integer toKey) {
+    return Math.max(0, map.rank(toKey) - map.rank(fromKey));
+  }
+
+  /**
+   * Returns the number of entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * logarithmic time (for sizing a buffer given to {@link #subMapInto}).
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  int sizeOfRange(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      return countInRange(fromKey, toKey);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Appends the entries with keys in the range from <code>fromKey</code>
+   * inclusive to <code>toKey</code> exclusive to the given list, in key
+   * order, as subMap would return them but without a list of their own.
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  void subMapInto(Integer fromKey, Integer toKey, ArrayList<Entry> out)
+      throws IllegalArgumentException {
+    readLock.lock();
+    try {
+      for (Entry e : map.subMap(fromKey, toKey))
+        out.add(e);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Appends all entries of the map to the given list, in key order, as entrySet would. */
+  void entriesInto(ArrayList<Entry> out) {
+    readLock.lock();
+    try {
+      for (Entry e : map.entrySet())
+        out.add(e);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /** Copies the entries of an iterable into a new list. */
+  private static ArrayList<Entry> copy(Iterable<Entry> entries, int capacity) {
+    ArrayList<Entry> buffer = new ArrayList<>(capacity);
+    for (Entry e : entries)
+      buffer.add(e);
+    return buffer;
+  }
+
+  /**
+   * Enables or disables instrumentation of the underlying map.
+   * @param enabled  whether operations should be instrumented
+   * @see TreeMap#setStatsEnabled
+   */
+  public void setStatsEnabled(boolean enabled) { map.setStatsEnabled(enabled); }
+
+  /**
+   * Returns the statistics of the underlying map, summed over all threads.
+   * @return the collected statistics (or null if instrumentation is disabled)
+   * @see TreeMap#getStats
+   */
+  public OperationStats getStats() { return map.getStats(); }
+}
@@ -0,0 +1,114 @@
+package countydb;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A thread-safe sorted map backed by a lock-free concurrent skip list
+ * (java.util.concurrent.ConcurrentSkipListMap).
+ *
+ * Every operation, updates included, proceeds without locking, so this
+ * backend suits workloads with many concurrent writers. Entries reported by
+ * the navigation methods are snapshots, and entrySet and subMap return
+ * copies, which may be traversed while other threads update the map.
+ */
+public class ConcurrentSkipListCountyMap extends AbstractMap implements SortedMap {
+
+  private final ConcurrentSkipListMap<Integer, County> map = new ConcurrentSkipListMap<>();
+
+  /** Constructs an empty map ordered by county code. */
+  public ConcurrentSkipListCountyMap() { }
+
+  /** Rejects a null key in the same way as checkKey. */
+  private static Integer keyOf(Integer key) throws IllegalArgumentException {
+    if (key == null) throw new IllegalArgumentException("Incompatible key");
+    return key;
+  }
+
+  /** Returns a snapshot entry for a skip-list entry (or null if e is null). */
+  private static Entry entryOf(java.util.Map.Entry<Integer, County> e) {
+    return (e == null ? null : new MapEntry(e.getKey(), e.getValue()));
+  }
+
+  /**
+   * Returns the number of entries in the map. As with the underlying skip
+   * list, this takes time proportional to the size of the map.
+   * @return number of entries in the map
+   */
+  @Override
+  public int size() { return map.size(); }
+
+  @Override
+  public boolean isEmpty() { return map.isEmpty(); }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    return map.get(keyOf(key));
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    return map.put(keyOf(key), value);
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    return map.remove(keyOf(key));
+  }
+
+  @Override
+  public Entry firstEntry() { return entryOf(map.firstEntry()); }
+
+  @Override
+  public Entry lastEntry() { return entryOf(map.lastEntry()); }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    return entryOf(map.ceilingEntry(keyOf(key)));
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    return entryOf(map.floorEntry(keyOf(key)));
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    return entryOf(map.lowerEntry(keyOf(key)));
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    return entryOf(map.higherEntry(keyOf(key)));
+  }
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    ArrayList<Entry> buffer = new ArrayList<>();
+    for (java.util.Map.Entry<Integer, County> e : map.entrySet())
+      buffer.add(entryOf(e));
+    return buffer;
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return iterable with keys in desired range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    keyOf(fromKey);
+    keyOf(toKey);
+    ArrayList<Entry> buffer = new ArrayList<>();
+    if (fromKey < toKey)                         // the skip list rejects inverted ranges
+      for (java.util.Map.Entry<Integer, County> e : map.subMap(fromKey, toKey).entrySet())
+        buffer.add(entryOf(e));
+    return buffer;
+  }
+}
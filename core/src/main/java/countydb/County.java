@@ -1,3 +1,4 @@
+package countydb;
 
 public class County
 {
@@ -5,12 +6,12 @@ public class County
 	int population;
 	String countyName;
 	
-	County()
+	public County()
 	{
 		
 	}
 	
-	County(int countyCode, int population, String countyName)
+	public County(int countyCode, int population, String countyName)
 	{
 		setCountyCode(countyCode);
 		setPopulation(population);
@@ -0,0 +1,75 @@
+package countydb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary form of a County record used by the files written by this
+ * package: the code and population as 4-byte ints followed by the name as a
+ * 2-byte length and its UTF-8 bytes (a length of -1 stands for a null name).
+ * Multi-byte values use the byte order of the buffer, big-endian by default.
+ */
+public final class CountyCodec {
+
+  /** Size of the fixed part of an encoded record (code, population, name length). */
+  public static final int HEADER_SIZE = 4 + 4 + 2;
+
+  private CountyCodec() { }
+
+  /** Returns the UTF-8 bytes of the name of c (or null if it has no name). */
+  private static byte[] nameBytes(County c) {
+    String name = c.getCountyName();
+    if (name == null) return null;
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE)
+      throw new IllegalArgumentException("County name of " + bytes.length + " bytes is too long");
+    return bytes;
+  }
+
+  /**
+   * Returns the number of bytes taken by the encoding of a county.
+   * @param c  the county to measure
+   * @return the size of its encoding
+   */
+  public static int encodedSize(County c) {
+    byte[] name = nameBytes(c);
+    return HEADER_SIZE + (name == null ? 0 : name.length);
+  }
+
+  /**
+   * Writes a county at the position of the buffer, advancing the position.
+   * @param c  the county to write
+   * @param buf  the buffer receiving the encoding
+   * @throws java.nio.BufferOverflowException if the buffer has too little room left
+   */
+  public static void encode(County c, ByteBuffer buf) {
+    byte[] name = nameBytes(c);
+    buf.putInt(c.getCountyCode());
+    buf.putInt(c.getPopulation());
+    if (name == null)
+      buf.putShort((short) -1);
+    else {
+      buf.putShort((short) name.length);
+      buf.put(name);
+    }
+  }
+
+  /**
+   * Reads a county at the position of the buffer, advancing the position.
+   * @param buf  the buffer holding the encoding
+   * @return the decoded county
+   * @throws java.nio.BufferUnderflowException if the buffer ends within the record
+   */
+  public static County decode(ByteBuffer buf) {
+    int code = buf.getInt();
+    int population = buf.getInt();
+    int length = buf.getShort();
+    String name = null;
+    if (length >= 0) {
+      byte[] bytes = new byte[length];
+      buf.get(bytes);
+      name = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return new County(code, population, name);
+  }
+}
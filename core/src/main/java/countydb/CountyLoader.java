@@ -0,0 +1,191 @@
+package countydb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads county records of the form <code>code,population,"name"</code>,
+ * one per line, and hands each one to a consumer as a County.
+ *
+ * The file is read through a FileChannel into a large direct buffer and
+ * parsed byte by byte: digits are accumulated directly into ints and only
+ * the name is decoded into a String, so no per-line strings, scanners or
+ * regular expressions are created. Numbers may carry a sign, and one that
+ * does not fit in an int is rejected as Integer.parseInt would. Blank lines
+ * are skipped, and lines may end with either "\n" or "\r\n".
+ */
+public class CountyLoader {
+
+  /** Default size of the read buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private final int bufferSize;
+  private byte[] nameBytes = new byte[64];    // scratch space for decoding names
+  private int cursor;                         // index just after the last number parsed
+  private long records = 0;
+  private long elapsedNanos = 0;
+
+  /** Constructs a loader using the default buffer size. */
+  public CountyLoader() { this(DEFAULT_BUFFER_SIZE); }
+
+  /**
+   * Constructs a loader using the given buffer size.
+   * @param bufferSize  size of the read buffer, which bounds the length of a line
+   */
+  public CountyLoader(int bufferSize) {
+    if (bufferSize < 1) throw new IllegalArgumentException("Buffer size must be positive");
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Parses every record of the given file, in file order.
+   * @param file  the file to read
+   * @param sink  receives each parsed county
+   * @return the number of records read
+   * @throws IOException if the file cannot be read or contains a malformed record
+   */
+  public long load(Path file, Consumer<County> sink) throws IOException {
+    long start = System.nanoTime();
+    records = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(bufferSize);
+      long base = 0;                             // file offset of buf[0]
+      boolean eof = false;
+      while (!eof) {
+        eof = (channel.read(buf) < 0);
+        buf.flip();
+        int end = (eof ? buf.limit() : lastLineEnd(buf));
+        if (end == 0 && !eof && buf.limit() == buf.capacity())
+          throw new IOException("Record at byte " + base + " is longer than the read buffer");
+        parse(buf, 0, end, base, sink);
+        buf.position(end);
+        buf.compact();                           // keep the partial last line
+        base += end;
+      }
+    }
+    elapsedNanos = System.nanoTime() - start;
+    return records;
+  }
+
+  /** Returns the number of records read by the last load. */
+  public long getRecordCount() { return records; }
+
+  /** Returns the duration of the last load in nanoseconds. */
+  public long getElapsedNanos() { return elapsedNanos; }
+
+  /** Returns the throughput of the last load in records per second. */
+  public double getRecordsPerSecond() {
+    return (elapsedNanos == 0 ? 0.0 : records * 1e9 / elapsedNanos);
+  }
+
+  /** Returns the index just after the last newline in buf (or 0 if there is none). */
+  private static int lastLineEnd(ByteBuffer buf) {
+    for (int i = buf.limit() - 1; i >= 0; i--)
+      if (buf.get(i) == '\n')
+        return i + 1;
+    return 0;
+  }
+
+  /**
+   * Parses the records held in buf between the indices from and to, which
+   * must start at the beginning of a line and end at the end of one.
+   * @param base  file offset of buf[0], used in error messages
+   * @return the number of records parsed
+   * @throws IOException if a malformed record is found
+   */
+  long parse(ByteBuffer buf, int from, int to, long base, Consumer<County> sink)
+      throws IOException {
+    long before = records;
+    int i = from;
+    while (i < to) {
+      byte b = buf.get(i);
+      if (b == '\n' || b == '\r' || b == ' ' || b == '\t') {   // blank space between records
+        i++;
+        continue;
+      }
+      int recordStart = i;
+
+      // county code
+      int code = parseInt(buf, i, to, base + recordStart);
+      i = skipSpaces(buf, cursor, to);
+      if (i == to || buf.get(i) != ',')
+        throw malformed(base + recordStart);
+      i = skipSpaces(buf, i + 1, to);
+
+      // population
+      int population = parseInt(buf, i, to, base + recordStart);
+      i = skipSpaces(buf, cursor, to);
+      if (i == to || buf.get(i) != ',')
+        throw malformed(base + recordStart);
+      i = skipSpaces(buf, i + 1, to);
+
+      // quoted name
+      if (i == to || buf.get(i) != '"')
+        throw malformed(base + recordStart);
+      int nameStart = ++i;
+      while (i < to && buf.get(i) != '"' && buf.get(i) != '\n')
+        i++;
+      if (i == to || buf.get(i) != '"')
+        throw malformed(base + recordStart);
+      String name = decode(buf, nameStart, i);
+
+      while (i < to && buf.get(i) != '\n')     // ignore the rest of the line
+        i++;
+      sink.accept(new County(code, population, name));
+      records++;
+    }
+    return records - before;
+  }
+
+  /**
+   * Parses an optionally signed decimal int starting at index i of buf,
+   * leaving the index just after its last digit in cursor.
+   * @param offset  file offset of the record, used in error messages
+   * @throws IOException if there are no digits or the number does not fit in an int
+   */
+  private int parseInt(ByteBuffer buf, int i, int to, long offset) throws IOException {
+    boolean negative = false;
+    if (i < to && (buf.get(i) == '-' || buf.get(i) == '+'))
+      negative = (buf.get(i++) == '-');
+    long limit = (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE);
+    long value = 0;
+    int digits = 0;
+    byte b;
+    while (i < to && (b = buf.get(i)) >= '0' && b <= '9') {
+      value = value * 10 + (b - '0');
+      if (value > limit)
+        throw new IOException("Number out of int range in county record at byte " + offset);
+      digits++;
+      i++;
+    }
+    if (digits == 0)
+      throw malformed(offset);
+    cursor = i;
+    return (int) (negative ? -value : value);
+  }
+
+  private static int skipSpaces(ByteBuffer buf, int i, int to) {
+    while (i < to && (buf.get(i) == ' ' || buf.get(i) == '\t'))
+      i++;
+    return i;
+  }
+
+  /** Decodes the UTF-8 bytes of buf between the indices from and to. */
+  private String decode(ByteBuffer buf, int from, int to) {
+    int length = to - from;
+    if (length > nameBytes.length)
+      nameBytes = new byte[Math.max(length, 2 * nameBytes.length)];
+    for (int k = 0; k < length; k++)
+      nameBytes[k] = buf.get(from + k);
+    return new String(nameBytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  private static IOException malformed(long offset) {
+    return new IOException("Malformed county record at byte " + offset);
+  }
+}
@@ -0,0 +1,123 @@
+package countydb;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+/**
+ * A sorted index from county names to county codes, ignoring case.
+ *
+ * Names are kept in a sorted map ordered by String.CASE_INSENSITIVE_ORDER,
+ * each with the codes of the counties bearing it in increasing order
+ * (names are usually unique, so most hold a single code). Lookups compare
+ * names in place, without building a lower-case copy, and all names
+ * starting with a prefix are adjacent in the order, so a prefix lookup is
+ * a search followed by a walk over the matching names only.
+ *
+ * The index holds codes only; IndexedAVLTreeMap keeps it in step with its
+ * entries and resolves the codes to counties.
+ */
+public class CountyNameIndex {
+
+  private static final int[] NONE = new int[0];
+
+  // each name (in the case first added) with the sorted codes bearing it
+  private final NavigableMap<String, int[]> names =
+      new java.util.TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+  private int size = 0;
+
+  /** Returns the number of (name, code) pairs in the index. */
+  public int size() { return size; }
+
+  /** Returns the number of distinct names in the index, ignoring case. */
+  public int nameCount() { return names.size(); }
+
+  /**
+   * Records that the county with the given code has the given name.
+   * @param name  the county name (ignored if null)
+   * @param code  the county code
+   */
+  public void add(String name, int code) {
+    if (name == null) return;
+    int[] codes = names.get(name);
+    if (codes == null) {
+      names.put(name, new int[] {code});
+      size++;
+      return;
+    }
+    int i = Arrays.binarySearch(codes, code);
+    if (i >= 0) return;                          // already recorded
+    i = -i - 1;
+    int[] grown = new int[codes.length + 1];
+    System.arraycopy(codes, 0, grown, 0, i);
+    grown[i] = code;
+    System.arraycopy(codes, i, grown, i + 1, codes.length - i);
+    names.put(name, grown);
+    size++;
+  }
+
+  /**
+   * Forgets that the county with the given code has the given name.
+   * @param name  the county name (ignored if null)
+   * @param code  the county code
+   */
+  public void remove(String name, int code) {
+    if (name == null) return;
+    int[] codes = names.get(name);
+    int i = (codes == null ? -1 : Arrays.binarySearch(codes, code));
+    if (i < 0) return;                           // not recorded
+    if (codes.length == 1)
+      names.remove(name);
+    else {
+      int[] shrunk = new int[codes.length - 1];
+      System.arraycopy(codes, 0, shrunk, 0, i);
+      System.arraycopy(codes, i + 1, shrunk, i, codes.length - i - 1);
+      names.put(name, shrunk);
+    }
+    size--;
+  }
+
+  /** Removes every name from the index. */
+  public void clear() {
+    names.clear();
+    size = 0;
+  }
+
+  /**
+   * Returns the codes of the counties with the given name, ignoring case.
+   * @param name  the name to look up
+   * @return the codes in increasing order (empty if there are none); the array must not be modified
+   * @throws IllegalArgumentException if name is null
+   */
+  public int[] codesIgnoreCase(String name) throws IllegalArgumentException {
+    if (name == null) throw new IllegalArgumentException("Incompatible name");
+    int[] codes = names.get(name);
+    return (codes == null ? NONE : codes);
+  }
+
+  /**
+   * Returns the codes of the counties whose names start with the given
+   * prefix, ignoring case, in order of name and then of code.
+   * @param prefix  the start of the names looked up
+   * @param limit  the greatest number of codes to return
+   * @return the matching codes (at most limit of them)
+   * @throws IllegalArgumentException if prefix is null or limit is negative
+   */
+  public int[] codesWithPrefix(String prefix, int limit) throws IllegalArgumentException {
+    if (prefix == null) throw new IllegalArgumentException("Incompatible name");
+    if (limit < 0) throw new IllegalArgumentException("Limit must not be negative");
+    int[] result = new int[Math.min(limit, 16)];
+    int count = 0;
+    for (java.util.Map.Entry<String, int[]> e : names.tailMap(prefix, true).entrySet()) {
+      if (count == limit || !e.getKey().regionMatches(true, 0, prefix, 0, prefix.length()))
+        break;                                   // past the names with the prefix
+      for (int code : e.getValue()) {
+        if (count == limit) break;
+        if (count == result.length)
+          result = Arrays.copyOf(result, Math.min(limit, 2 * result.length));
+        result[count++] = code;
+      }
+    }
+    return (count == result.length ? result : Arrays.copyOf(result, count));
+  }
+}
@@ -0,0 +1,119 @@
+package countydb;
+
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+
+/**
+ * A balanced index of counties ordered by population, and by county code
+ * among equal populations.
+ *
+ * Each county is filed in a red-black tree under a single long combining
+ * its population (high half) and code (low half), which orders the keys
+ * by (population, code) with one comparison of primitives. Queries walk
+ * the tree from one end, or from a population, and stop after the entries
+ * wanted, so the k largest counties cost O(log n + k) rather than a scan
+ * and a sort of every record.
+ *
+ * IndexedAVLTreeMap keeps the index in step with its entries.
+ */
+public class CountyPopulationIndex {
+
+  private final NavigableMap<Long, County> counties = new java.util.TreeMap<>();
+
+  /** Returns the key of the county with the given population and code. */
+  private static long key(int population, int code) {
+    return ((long) population << 32) | ((code ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+  }
+
+  /** Returns the number of counties in the index. */
+  public int size() { return counties.size(); }
+
+  /**
+   * Files a county under its population and the given code.
+   * @param c  the county (ignored if null)
+   * @param code  the code the county is stored under
+   */
+  public void add(County c, int code) {
+    if (c != null)
+      counties.put(key(c.getPopulation(), code), c);
+  }
+
+  /**
+   * Removes the county filed under its population and the given code.
+   * @param c  the county, with the population it was added with (ignored if null)
+   * @param code  the code the county is stored under
+   */
+  public void remove(County c, int code) {
+    if (c != null)
+      counties.remove(key(c.getPopulation(), code));
+  }
+
+  /** Removes every county from the index. */
+  public void clear() { counties.clear(); }
+
+  /**
+   * Returns the k most populous counties, largest first.
+   * @param k  the greatest number of counties to return
+   * @return iterable of at most k counties, produced as they are visited
+   * @throws IllegalArgumentException if k is negative
+   */
+  public Iterable<County> topK(int k) throws IllegalArgumentException {
+    return new LimitedIterable(counties.descendingMap(), k);
+  }
+
+  /**
+   * Returns the k least populous counties, smallest first.
+   * @param k  the greatest number of counties to return
+   * @return iterable of at most k counties, produced as they are visited
+   * @throws IllegalArgumentException if k is negative
+   */
+  public Iterable<County> bottomK(int k) throws IllegalArgumentException {
+    return new LimitedIterable(counties, k);
+  }
+
+  /**
+   * Returns the counties with populations from lo to hi, both inclusive,
+   * by increasing population.
+   * @param lo  the least population wanted
+   * @param hi  the greatest population wanted
+   * @return iterable of the counties in the range, produced as they are visited
+   */
+  public Iterable<County> between(int lo, int hi) {
+    if (lo > hi)
+      return new LimitedIterable(counties, 0);
+    return new LimitedIterable(counties.subMap(key(lo, Integer.MIN_VALUE), true,
+                                               key(hi, Integer.MAX_VALUE), true),
+                               Integer.MAX_VALUE);
+  }
+
+  //---------------- nested LimitedIterable class ----------------
+  /** The first limit values of a view of the index. */
+  private static class LimitedIterable implements Iterable<County> {
+    private final NavigableMap<Long, County> view;
+    private final int limit;
+
+    LimitedIterable(NavigableMap<Long, County> view, int limit) {
+      if (limit < 0) throw new IllegalArgumentException("Limit must not be negative");
+      this.view = view;
+      this.limit = limit;
+    }
+
+    public Iterator<County> iterator() {
+      return new Iterator<County>() {
+        private final Iterator<County> values = view.values().iterator();
+        private int remaining = limit;
+
+        public boolean hasNext() { return remaining > 0 && values.hasNext(); }
+
+        public County next() {
+          if (!hasNext()) throw new NoSuchElementException("no more counties");
+          remaining--;
+          return values.next();
+        }
+
+        public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+      };
+    }
+  } //----------- end of nested LimitedIterable class -----------
+}
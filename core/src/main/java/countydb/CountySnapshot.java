@@ -0,0 +1,194 @@
+package countydb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the contents of a county map to a compact binary file and restores
+ * an AVLTreeMap from it.
+ *
+ * A snapshot starts with a header holding a magic number, the format
+ * version and the number of records. The records follow in increasing
+ * order of county code, each in the encoding of CountyCodec, and the file
+ * ends with a CRC-32 checksum of the records.
+ *
+ * Restoring reads the file front to back through a large direct buffer,
+ * decodes the records straight into an array and builds the tree from it
+ * with AVLTreeMap.bulkLoad. Since the records are already sorted, no
+ * parsing, searching or rotating takes place, and the tree is built in
+ * linear time. The tree shape is not stored: the bottom-up build gives a
+ * tree at least as well balanced as the one that was written.
+ */
+public class CountySnapshot {
+
+  /** The first four bytes of every snapshot ("CTYS"). */
+  public static final int MAGIC = 0x43545953;
+
+  /** The format version written by this class. */
+  public static final int VERSION = 1;
+
+  /** Size of the header: magic number, version and record count. */
+  private static final int HEADER = 4 + 4 + 4;
+
+  /** Size of the buffer used for reading and writing. */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private long records = 0;
+  private long elapsedNanos = 0;
+
+  /**
+   * Writes the entries of the given map to a snapshot file. The snapshot is
+   * written to a temporary file first and moved over the target at the end,
+   * so an interrupted write never leaves a damaged snapshot behind.
+   * @param map  the map to save
+   * @param file  the file receiving the snapshot
+   * @return the number of records written
+   * @throws IOException if the file cannot be written
+   */
+  public long write(SortedMap map, Path file) throws IOException {
+    long start = System.nanoTime();
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    int count = 0;
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      channel.position(HEADER);                  // filled in once the count is known
+      for (Entry e : map.entrySet()) {
+        County c = e.getValue();
+        if (buf.remaining() < CountyCodec.encodedSize(c))
+          drain(buf, channel, crc);
+        CountyCodec.encode(c, buf);
+        count++;
+      }
+      drain(buf, channel, crc);
+      buf.putInt((int) crc.getValue()).flip();
+      writeFully(buf, channel);
+      buf.clear();
+      buf.putInt(MAGIC).putInt(VERSION).putInt(count).flip();
+      channel.position(0);
+      writeFully(buf, channel);
+      channel.force(false);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    records = count;
+    elapsedNanos = System.nanoTime() - start;
+    return count;
+  }
+
+  /** Writes out the encoded records held in buf, adding them to the checksum. */
+  private static void drain(ByteBuffer buf, FileChannel channel, CRC32 crc) throws IOException {
+    buf.flip();
+    crc.update(buf.duplicate());
+    writeFully(buf, channel);
+    buf.clear();
+  }
+
+  private static void writeFully(ByteBuffer buf, FileChannel channel) throws IOException {
+    while (buf.hasRemaining())
+      channel.write(buf);
+  }
+
+  /**
+   * Reads a snapshot and builds a map holding its records.
+   * @param file  the snapshot to read
+   * @return a new map holding the records of the snapshot
+   * @throws IOException if the file cannot be read or is not an intact snapshot
+   */
+  public AVLTreeMap read(Path file) throws IOException {
+    long start = System.nanoTime();
+    County[] counties;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      fill(buf, channel, HEADER);
+      if (buf.getInt() != MAGIC)
+        throw new IOException(file + " is not a county snapshot");
+      int version = buf.getInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported snapshot version " + version);
+      int count = buf.getInt();
+      long room = (channel.size() - HEADER - 4) / CountyCodec.HEADER_SIZE;  // smallest records
+      if (count < 0 || count > room)             // checked before the array is allocated
+        throw new IOException("Damaged snapshot header");
+
+      counties = new County[count];
+      CRC32 crc = new CRC32();
+      int checked = buf.position();              // records before it are in crc
+      for (int i = 0; i < count; i++) {
+        while (!holdsRecord(buf)) {
+          checksum(buf, checked, crc);
+          refill(buf, channel);
+          checked = 0;
+        }
+        counties[i] = CountyCodec.decode(buf);
+      }
+      checksum(buf, checked, crc);
+      while (buf.remaining() < 4)
+        refill(buf, channel);
+      if (buf.getInt() != (int) crc.getValue())
+        throw new IOException("Snapshot checksum mismatch in " + file);
+    }
+    AVLTreeMap map = AVLTreeMap.bulkLoad(counties);
+    records = counties.length;
+    elapsedNanos = System.nanoTime() - start;
+    return map;
+  }
+
+  /** Returns whether the readable part of buf holds a complete record. */
+  private static boolean holdsRecord(ByteBuffer buf) {
+    if (buf.remaining() < CountyCodec.HEADER_SIZE)
+      return false;
+    int length = buf.getShort(buf.position() + 8);
+    return buf.remaining() >= CountyCodec.HEADER_SIZE + Math.max(0, length);
+  }
+
+  /** Adds the bytes of buf from the given index to its position to the checksum. */
+  private static void checksum(ByteBuffer buf, int from, CRC32 crc) {
+    ByteBuffer decoded = buf.duplicate();
+    decoded.limit(buf.position()).position(from);
+    crc.update(decoded);
+  }
+
+  /**
+   * Moves the unread bytes of buf to its start and reads more after them,
+   * leaving buf ready for reading.
+   * @throws IOException if the file has no more bytes
+   */
+  private static void refill(ByteBuffer buf, FileChannel channel) throws IOException {
+    buf.compact();
+    int read = channel.read(buf);
+    buf.flip();
+    if (read < 0)
+      throw new IOException("Snapshot ends unexpectedly");
+  }
+
+  /**
+   * Reads from the channel into the empty buffer buf until at least the
+   * given number of bytes are buffered, then flips it for reading.
+   * @throws IOException if the file ends first
+   */
+  private static void fill(ByteBuffer buf, FileChannel channel, int needed) throws IOException {
+    while (buf.position() < needed)
+      if (channel.read(buf) < 0)
+        throw new IOException("Snapshot ends unexpectedly");
+    buf.flip();
+  }
+
+  /** Returns the number of records written or read by the last operation. */
+  public long getRecordCount() { return records; }
+
+  /** Returns the duration of the last operation in nanoseconds. */
+  public long getElapsedNanos() { return elapsedNanos; }
+
+  /** Returns the throughput of the last operation in records per second. */
+  public double getRecordsPerSecond() {
+    return (elapsedNanos == 0 ? 0.0 : records * 1e9 / elapsedNanos);
+  }
+}
@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 /**
  * Interface for a key-value pair.
  *
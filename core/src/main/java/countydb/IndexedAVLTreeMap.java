@@ -0,0 +1,178 @@
+package countydb;
+
+import java.util.ArrayList;
+
+/**
+ * An AVL tree map of counties by code that also keeps secondary indexes of
+ * the county names and populations, so that counties can be found by name,
+ * or by population order, without a walk over all the values.
+ *
+ * Every put, remove and bulk load updates the indexes along with the tree,
+ * so they always agree. The indexes record the name and population a county
+ * had when it was put: a County held by the map must not be changed in
+ * place, but put again under its code instead.
+ */
+public class IndexedAVLTreeMap extends AVLTreeMap {
+
+  /** Greatest number of counties returned by findByNamePrefix without a limit. */
+  public static final int DEFAULT_PREFIX_LIMIT = 100;
+
+  private final CountyNameIndex names = new CountyNameIndex();
+
+  private final CountyPopulationIndex populations = new CountyPopulationIndex();
+
+  /** Constructs an empty map using the natural ordering of keys. */
+  public IndexedAVLTreeMap() { super(); }
+
+  /**
+   * Builds a map holding the given counties, keyed by county code, in the
+   * same way as {@link AVLTreeMap#bulkLoad}, and indexes their names.
+   * @param counties  the records to load (the array is not modified)
+   * @return a new map holding the records
+   */
+  public static IndexedAVLTreeMap bulkLoad(County[] counties) {
+    IndexedAVLTreeMap map = new IndexedAVLTreeMap();
+    map.buildBalanced(sortedDistinct(counties));
+    return map;
+  }
+
+  //---------------- index maintenance ----------------
+
+  /** Bulk loading indexes every record loaded. */
+  @Override
+  protected void buildBalanced(County[] sorted) throws IllegalStateException {
+    super.buildBalanced(sorted);
+    for (County c : sorted)
+      index(c, c.getCountyCode());
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    County old = super.put(key, value);
+    unindex(old, key);
+    index(value, key);
+    return old;
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    County old = super.remove(key);
+    unindex(old, key);
+    return old;
+  }
+
+  private void index(County c, int code) {
+    if (c != null) {
+      names.add(c.getCountyName(), code);
+      populations.add(c, code);
+    }
+  }
+
+  private void unindex(County c, int code) {
+    if (c != null) {
+      names.remove(c.getCountyName(), code);
+      populations.remove(c, code);
+    }
+  }
+
+  /** Returns the name index (for statistics; it must not be modified). */
+  public CountyNameIndex getNameIndex() { return names; }
+
+  /** Returns the population index (for statistics; it must not be modified). */
+  public CountyPopulationIndex getPopulationIndex() { return populations; }
+
+  //---------------- lookups by name ----------------
+
+  /** Returns the counties with the given codes, in the same order. */
+  private Iterable<County> resolve(int[] codes, String exactName) {
+    ArrayList<County> result = new ArrayList<>(codes.length);
+    for (int code : codes) {
+      County c = get(code);
+      if (c != null && (exactName == null || exactName.equals(c.getCountyName())))
+        result.add(c);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the counties with exactly the given name.
+   * @param name  the name, such as "Orange, CA"
+   * @return iterable of the counties with that name, by increasing code (empty if none)
+   * @throws IllegalArgumentException if name is null
+   */
+  public Iterable<County> findByName(String name) throws IllegalArgumentException {
+    return resolve(names.codesIgnoreCase(name), name);
+  }
+
+  /**
+   * Returns the counties with the given name, ignoring case.
+   * @param name  the name, such as "orange, ca"
+   * @return iterable of the counties with that name, by increasing code (empty if none)
+   * @throws IllegalArgumentException if name is null
+   */
+  public Iterable<County> findByNameIgnoreCase(String name) throws IllegalArgumentException {
+    return resolve(names.codesIgnoreCase(name), null);
+  }
+
+  /**
+   * Returns the counties whose names start with the given prefix, ignoring
+   * case, in order of name.
+   * @param prefix  the start of the names, such as "san "
+   * @param limit  the greatest number of counties to return
+   * @return iterable of at most limit matching counties
+   * @throws IllegalArgumentException if prefix is null or limit is negative
+   */
+  public Iterable<County> findByNamePrefix(String prefix, int limit)
+      throws IllegalArgumentException {
+    return resolve(names.codesWithPrefix(prefix, limit), null);
+  }
+
+  /**
+   * Returns at most DEFAULT_PREFIX_LIMIT counties whose names start with
+   * the given prefix, ignoring case, in order of name.
+   * @throws IllegalArgumentException if prefix is null
+   */
+  public Iterable<County> findByNamePrefix(String prefix) throws IllegalArgumentException {
+    return findByNamePrefix(prefix, DEFAULT_PREFIX_LIMIT);
+  }
+
+  //---------------- lookups by population ----------------
+
+  /**
+   * Returns the k most populous counties, largest first (by code among equal
+   * populations). The counties are found as they are iterated, in
+   * O(log n + k) time; the map must not be modified meanwhile.
+   * @param k  the greatest number of counties to return
+   * @return iterable of at most k counties
+   * @throws IllegalArgumentException if k is negative
+   */
+  public Iterable<County> topK(int k) throws IllegalArgumentException {
+    return populations.topK(k);
+  }
+
+  /**
+   * Returns the k least populous counties, smallest first (by code among
+   * equal populations). The counties are found as they are iterated, in
+   * O(log n + k) time; the map must not be modified meanwhile.
+   * @param k  the greatest number of counties to return
+   * @return iterable of at most k counties
+   * @throws IllegalArgumentException if k is negative
+   */
+  public Iterable<County> bottomK(int k) throws IllegalArgumentException {
+    return populations.bottomK(k);
+  }
+
+  /**
+   * Returns the counties with populations from lo to hi, both inclusive, by
+   * increasing population; for example populationBetween(1000000,
+   * Integer.MAX_VALUE) lists the counties of a million people or more. The
+   * counties are found as they are iterated; the map must not be modified
+   * meanwhile.
+   * @param lo  the least population wanted
+   * @param hi  the greatest population wanted
+   * @return iterable of the counties in the range (empty if lo &gt; hi)
+   */
+  public Iterable<County> populationBetween(int lo, int hi) {
+    return populations.between(lo, hi);
+  }
+}
@@ -0,0 +1,469 @@
+package countydb;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An implementation of a sorted map using an AVL tree whose nodes store
+ * the county code as a primitive int.
+ *
+ * Unlike AVLTreeMap, searches compare keys with plain integer arithmetic
+ * rather than through a Comparator, and the int overloads of get, put and
+ * remove never box the key, so a lookup performs no allocation at all.
+ * External positions are represented by null references rather than by
+ * sentinel leaves. Entries reported by the navigation and iteration
+ * methods are snapshots created on demand.
+ */
+public class IntAVLTreeMap extends AbstractSortedMap {
+
+  //---------------- nested IntNode class ----------------
+  /** Node of the tree, storing a raw int key, its value and its height. */
+  protected static class IntNode {
+    int key;                 // the county code
+    County value;            // the associated county record
+    IntNode parent;          // a reference to the parent node (if any)
+    IntNode left;            // a reference to the left child (if any)
+    IntNode right;           // a reference to the right child (if any)
+    int height = 1;          // height of the subtree rooted at this node
+
+    IntNode(int key, County value, IntNode parent) {
+      this.key = key;
+      this.value = value;
+      this.parent = parent;
+    }
+  } //----------- end of nested IntNode class -----------
+
+  /** The root of the tree (or null if the map is empty). */
+  protected IntNode root = null;
+
+  /** The number of entries in the map. */
+  private int size = 0;
+
+  /** Constructs an empty map ordered by county code. */
+  public IntAVLTreeMap() { super(); }
+
+  /**
+   * Returns the number of entries in the map.
+   * @return number of entries in the map
+   */
+  @Override
+  public int size() { return size; }
+
+  /** Unboxes a key, rejecting null in the same way as checkKey. */
+  private static int keyOf(Integer key) throws IllegalArgumentException {
+    if (key == null) throw new IllegalArgumentException("Incompatible key");
+    return key;
+  }
+
+  /** Returns a snapshot entry for the given node (or null if node is null). */
+  private static Entry entryOf(IntNode node) {
+    return (node == null ? null : new MapEntry(node.key, node.value));
+  }
+
+  /**
+   * Returns the node having the given key (or null if no such node exists).
+   * @param key  a target key
+   * @return node holding key, or null if key is not in the map
+   */
+  protected IntNode search(int key) {
+    IntNode walk = root;
+    while (walk != null) {
+      if (key < walk.key)
+        walk = walk.left;
+      else if (key > walk.key)
+        walk = walk.right;
+      else
+        return walk;                     // key found
+    }
+    return null;                         // key not found
+  }
+
+  /** Returns the node with the minimal key in the subtree rooted at p. */
+  protected IntNode treeMin(IntNode p) {
+    while (p.left != null)
+      p = p.left;
+    return p;
+  }
+
+  /** Returns the node with the maximal key in the subtree rooted at p. */
+  protected IntNode treeMax(IntNode p) {
+    while (p.right != null)
+      p = p.right;
+    return p;
+  }
+
+  /**
+   * Returns the value associated with the specified key, or null if no such entry exists.
+   * @param key  the key whose associated value is to be returned
+   * @return the associated value, or null if no such entry exists
+   */
+  public County get(int key) {
+    IntNode p = search(key);
+    return (p == null ? null : p.value);
+  }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    return get(keyOf(key));
+  }
+
+  /**
+   * Associates the given value with the given key. If an entry with
+   * the key was already in the map, this replaced the previous value
+   * with the new one and returns the old value. Otherwise, a new
+   * entry is added and null is returned.
+   * @param key    key with which the specified value is to be associated
+   * @param value  value to be associated with the specified key
+   * @return the previous value associated with the key (or null, if no such entry)
+   */
+  public County put(int key, County value) {
+    if (root == null) {                     // first entry becomes the root
+      root = new IntNode(key, value, null);
+      size = 1;
+      return null;
+    }
+    IntNode walk = root;
+    while (true) {
+      if (key < walk.key) {
+        if (walk.left == null) {            // key is new; attach as left child
+          walk.left = new IntNode(key, value, walk);
+          break;
+        }
+        walk = walk.left;
+      } else if (key > walk.key) {
+        if (walk.right == null) {           // key is new; attach as right child
+          walk.right = new IntNode(key, value, walk);
+          break;
+        }
+        walk = walk.right;
+      } else {                              // replacing existing key
+        County old = walk.value;
+        walk.value = value;
+        return old;
+      }
+    }
+    size++;
+    rebalance(walk);
+    return null;
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    return put(keyOf(key), value);
+  }
+
+  /**
+   * Removes the entry with the specified key, if present, and returns
+   * its associated value. Otherwise does nothing and returns null.
+   * @param key  the key whose entry is to be removed from the map
+   * @return the previous value associated with the removed key, or null if no such entry exists
+   */
+  public County remove(int key) {
+    IntNode p = search(key);
+    if (p == null) return null;             // key not found
+    County old = p.value;
+    if (p.left != null && p.right != null) { // both children present
+      IntNode replacement = treeMax(p.left);
+      p.key = replacement.key;
+      p.value = replacement.value;
+      p = replacement;
+    } // now p has at most one child
+    IntNode child = (p.left != null ? p.left : p.right);
+    IntNode parent = p.parent;
+    if (child != null)
+      child.parent = parent;                // child's grandparent becomes its parent
+    if (parent == null)
+      root = child;                         // child becomes root
+    else if (p == parent.left)
+      parent.left = child;
+    else
+      parent.right = child;
+    p.parent = p.left = p.right = null;     // help garbage collection
+    p.value = null;
+    size--;
+    if (parent != null)
+      rebalance(parent);
+    return old;
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    return remove(keyOf(key));
+  }
+
+  //---------------- AVL balancing ----------------
+
+  /** Returns the height of the given subtree (0 for an empty one). */
+  private static int height(IntNode p) {
+    return (p == null ? 0 : p.height);
+  }
+
+  /** Recomputes the height of the given node based on its children's heights. */
+  private static void recomputeHeight(IntNode p) {
+    p.height = 1 + Math.max(height(p.left), height(p.right));
+  }
+
+  /** Returns a child of p with height no smaller than that of the other child. */
+  private IntNode tallerChild(IntNode p) {
+    int lh = height(p.left), rh = height(p.right);
+    if (lh > rh) return p.left;                    // clear winner
+    if (lh < rh) return p.right;                   // clear winner
+    // equal height children; break tie while matching parent's orientation
+    if (p.parent == null || p == p.parent.left) return p.left;
+    else return p.right;
+  }
+
+  /** Relinks a parent node with its oriented child node (child may be null). */
+  private static void relink(IntNode parent, IntNode child, boolean makeLeftChild) {
+    if (child != null)
+      child.parent = parent;
+    if (makeLeftChild)
+      parent.left = child;
+    else
+      parent.right = child;
+  }
+
+  /** Rotates node x above its parent. Caller should ensure that x is not the root. */
+  private void rotate(IntNode x) {
+    IntNode y = x.parent;
+    IntNode z = y.parent;                          // grandparent (possibly null)
+    if (z == null) {
+      root = x;                                    // x becomes root of the tree
+      x.parent = null;
+    } else
+      relink(z, x, y == z.left);                   // x becomes direct child of z
+    // now rotate x and y, including transfer of middle subtree
+    if (x == y.left) {
+      relink(y, x.right, true);                    // x's right child becomes y's left
+      relink(x, y, false);                         // y becomes x's right child
+    } else {
+      relink(y, x.left, false);                    // x's left child becomes y's right
+      relink(x, y, true);                          // y becomes left child of x
+    }
+  }
+
+  /** Performs a trinode restructuring of x with its parent and grandparent. */
+  private IntNode restructure(IntNode x) {
+    IntNode y = x.parent;
+    IntNode z = y.parent;
+    if ((x == y.right) == (y == z.right)) {        // matching alignments
+      rotate(y);                                   // single rotation (of y)
+      return y;                                    // y is new subtree root
+    } else {                                       // opposite alignments
+      rotate(x);                                   // double rotation (of x)
+      rotate(x);
+      return x;                                    // x is new subtree root
+    }
+  }
+
+  /**
+   * Traverses the path upward from p, performing a trinode restructuring
+   * when imbalance is found, continuing until balance is restored.
+   */
+  private void rebalance(IntNode p) {
+    int oldHeight, newHeight;
+    do {
+      oldHeight = p.height;
+      if (Math.abs(height(p.left) - height(p.right)) > 1) { // imbalance detected
+        p = restructure(tallerChild(tallerChild(p)));
+        recomputeHeight(p.left);
+        recomputeHeight(p.right);
+      }
+      recomputeHeight(p);
+      newHeight = p.height;
+      p = p.parent;
+    } while (oldHeight != newHeight && p != null);
+  }
+
+  //---------------- SortedMap behaviors ----------------
+
+  @Override
+  public Entry firstEntry() {
+    return (root == null ? null : entryOf(treeMin(root)));
+  }
+
+  @Override
+  public Entry lastEntry() {
+    return (root == null ? null : entryOf(treeMax(root)));
+  }
+
+  /** Returns the entry with least key greater than or equal to the given key. */
+  public Entry ceilingEntry(int key) {
+    IntNode walk = root, best = null;
+    while (walk != null) {
+      if (key < walk.key) { best = walk; walk = walk.left; }
+      else if (key > walk.key) walk = walk.right;
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    return ceilingEntry(keyOf(key));
+  }
+
+  /** Returns the entry with greatest key less than or equal to the given key. */
+  public Entry floorEntry(int key) {
+    IntNode walk = root, best = null;
+    while (walk != null) {
+      if (key > walk.key) { best = walk; walk = walk.right; }
+      else if (key < walk.key) walk = walk.left;
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    return floorEntry(keyOf(key));
+  }
+
+  /** Returns the entry with greatest key strictly less than the given key. */
+  public Entry lowerEntry(int key) {
+    IntNode walk = root, best = null;
+    while (walk != null) {
+      if (walk.key < key) { best = walk; walk = walk.right; }
+      else walk = walk.left;
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    return lowerEntry(keyOf(key));
+  }
+
+  /** Returns the entry with least key strictly greater than the given key. */
+  public Entry higherEntry(int key) {
+    IntNode walk = root, best = null;
+    while (walk != null) {
+      if (walk.key > key) { best = walk; walk = walk.left; }
+      else walk = walk.right;
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    return higherEntry(keyOf(key));
+  }
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map.
+   * The entries are found as the iteration proceeds, so the map must not
+   * be modified while an iteration is in progress.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    return () -> new EntryIterator(root == null ? null : treeMin(root), AFTER_ALL, false);
+  }
+
+  /** A bound above every int key, for iterations without an upper limit. */
+  private static final long AFTER_ALL = Integer.MAX_VALUE + 1L;
+
+  //---------------- nested EntryIterator class ----------------
+  /**
+   * Reports the entries from a start node, following successor links up to
+   * an exclusive upper bound (or, if descending, predecessor links down to
+   * an inclusive lower bound).
+   */
+  private class EntryIterator implements Iterator<Entry> {
+    private IntNode next;
+    private final long bound;
+    private final boolean descending;
+
+    EntryIterator(IntNode start, long bound, boolean descending) {
+      this.bound = bound;
+      this.descending = descending;
+      next = start;
+      trim();
+    }
+
+    /** Ends the iteration once the next node is beyond the bound. */
+    private void trim() {
+      if (next != null && (descending ? next.key < bound : next.key >= bound))
+        next = null;
+    }
+
+    public boolean hasNext() { return next != null; }
+
+    public Entry next() {
+      if (next == null) throw new NoSuchElementException("no more entries");
+      IntNode p = next;
+      next = (descending ? predecessor(p) : successor(p));
+      trim();
+      return entryOf(p);
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested EntryIterator class -----------
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * Each iteration starts at the ceiling of <code>fromKey</code> and walks
+   * successors until <code>toKey</code>, taking O(log n + k) time for k
+   * entries. The map must not be modified while an iteration is in progress.
+   * @return iterable with keys in desired range
+   */
+  public Iterable<Entry> subMap(int fromKey, int toKey) {
+    return () -> {
+      IntNode p = root, start = null;            // locate ceiling node of fromKey
+      while (p != null) {
+        if (p.key < fromKey) p = p.right;
+        else { start = p; p = p.left; }
+      }
+      return new EntryIterator(start, toKey, false);
+    };
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key. Each iteration starts below <code>toKey</code>
+   * and walks predecessors down to <code>fromKey</code>.
+   * @return iterable with keys in desired range, greatest first
+   */
+  public Iterable<Entry> descendingSubMap(int fromKey, int toKey) {
+    return () -> {
+      IntNode p = root, start = null;            // locate lower node of toKey
+      while (p != null) {
+        if (p.key >= toKey) p = p.left;
+        else { start = p; p = p.right; }
+      }
+      return new EntryIterator(start, fromKey, true);
+    };
+  }
+
+  @Override
+  public Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    return descendingSubMap(keyOf(fromKey), keyOf(toKey));
+  }
+
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    return subMap(keyOf(fromKey), keyOf(toKey));
+  }
+
+  /** Returns the in-order successor of p (or null if p holds the greatest key). */
+  private IntNode successor(IntNode p) {
+    if (p.right != null)
+      return treeMin(p.right);
+    while (p.parent != null && p == p.parent.right)
+      p = p.parent;
+    return p.parent;
+  }
+
+  /** Returns the in-order predecessor of p (or null if p holds the least key). */
+  private IntNode predecessor(IntNode p) {
+    if (p.left != null)
+      return treeMax(p.left);
+    while (p.parent != null && p == p.parent.left)
+      p = p.parent;
+    return p.parent;
+  }
+}
@@ -0,0 +1,109 @@
+package countydb;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies in nanoseconds with log-linear buckets, in the
+ * style of an HDR histogram.
+ *
+ * Values below 128 are counted exactly. Larger values are grouped by their
+ * power of two, and each power of two is split into 64 equal sub-buckets,
+ * so every recorded value is reported with a relative error below 1/64
+ * (about 1.6%). The bucket array has a fixed size of 3712 counts, which
+ * covers every non-negative long, and recording never allocates.
+ */
+public class LatencyHistogram {
+
+  /** Number of bits of precision kept for every value. */
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;       // 128
+  private static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;             // 64
+  private static final int BUCKETS = SUB_BUCKET_COUNT + (63 - SUB_BUCKET_BITS) * HALF_COUNT;
+
+  private final long[] counts = new long[BUCKETS];
+  private long totalCount = 0;
+  private long totalValue = 0;
+  private long maxValue = 0;
+
+  /** Returns the bucket holding the given (non-negative) value. */
+  private static int bucketOf(long value) {
+    if (value < SUB_BUCKET_COUNT)
+      return (int) value;                                   // exact bucket
+    int exponent = 63 - Long.numberOfLeadingZeros(value);   // at least SUB_BUCKET_BITS
+    int shift = exponent - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+  }
+
+  /** Returns the largest value that falls into the given bucket. */
+  private static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT)
+      return bucket;
+    int shift = (bucket - SUB_BUCKET_COUNT) / HALF_COUNT + 1;
+    long mantissa = (bucket - SUB_BUCKET_COUNT) % HALF_COUNT + HALF_COUNT;
+    return ((mantissa + 1) << shift) - 1;
+  }
+
+  /**
+   * Records one observation.
+   * @param nanos  the observed latency (negative values are recorded as 0)
+   */
+  public void record(long nanos) {
+    if (nanos < 0) nanos = 0;
+    counts[bucketOf(nanos)]++;
+    totalCount++;
+    totalValue += nanos;
+    if (nanos > maxValue) maxValue = nanos;
+  }
+
+  /** Returns the number of recorded observations. */
+  public long getCount() { return totalCount; }
+
+  /** Returns the largest recorded value (0 if nothing has been recorded). */
+  public long getMax() { return maxValue; }
+
+  /** Returns the mean of the recorded values (0 if nothing has been recorded). */
+  public double getMean() {
+    return (totalCount == 0 ? 0.0 : (double) totalValue / totalCount);
+  }
+
+  /**
+   * Returns the value at the given percentile, reported as the upper bound
+   * of the bucket in which it falls (and never more than the maximum).
+   * @param percentile  a percentile between 0 and 100
+   * @return the value at that percentile (0 if nothing has been recorded)
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (totalCount == 0) return 0;
+    long rank = (long) Math.ceil(percentile / 100.0 * totalCount);
+    if (rank < 1) rank = 1;
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts[b];
+      if (seen >= rank)
+        return Math.min(highestValueOf(b), maxValue);
+    }
+    return maxValue;
+  }
+
+  /** Adds all observations of another histogram to this one. */
+  public void add(LatencyHistogram other) {
+    for (int b = 0; b < BUCKETS; b++)
+      counts[b] += other.counts[b];
+    totalCount += other.totalCount;
+    totalValue += other.totalValue;
+    maxValue = Math.max(maxValue, other.maxValue);
+  }
+
+  /** Discards all observations. */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = totalValue = maxValue = 0;
+  }
+
+  /** Returns a one-line summary of the distribution. */
+  public String toString() {
+    return String.format("count=%d p50=%dns p99=%dns p999=%dns max=%dns",
+                         totalCount, getValueAtPercentile(50), getValueAtPercentile(99),
+                         getValueAtPercentile(99.9), maxValue);
+  }
+}
@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 /**
  * Concrete implementation of a binary tree using a node-based, linked structure.
  *
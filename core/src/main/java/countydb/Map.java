@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 /**
  * An interface for an associative map which binds a key uniquely to a value.
  * This interface is a simplified version of java.util.Map.
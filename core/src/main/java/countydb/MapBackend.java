@@ -0,0 +1,47 @@
+package countydb;
+
+/**
+ * The sorted map implementations available for holding county records, so
+ * that a backend can be chosen by name when a map is constructed.
+ */
+public enum MapBackend {
+
+  /** A single-threaded AVL tree (AVLTreeMap). */
+  AVL {
+    public SortedMap create() { return new AVLTreeMap(); }
+  },
+
+  /** A single-threaded array-backed AVL tree with off-heap records (OffHeapAVLTreeMap). */
+  OFF_HEAP_AVL {
+    public SortedMap create() { return new OffHeapAVLTreeMap(); }
+  },
+
+  /** An AVL tree guarded by a read-write lock (ConcurrentAVLTreeMap). */
+  CONCURRENT_AVL {
+    public SortedMap create() { return new ConcurrentAVLTreeMap(); }
+  },
+
+  /** A persistent AVL tree with lock-free reads (PersistentAVLTreeMap). */
+  PERSISTENT_AVL {
+    public SortedMap create() { return new PersistentAVLTreeMap(); }
+  },
+
+  /** Locked AVL trees, one per state (ShardedCountyMap). */
+  SHARDED_AVL {
+    public SortedMap create() { return new ShardedCountyMap(); }
+  },
+
+  /** A lock-free concurrent skip list (ConcurrentSkipListCountyMap). */
+  SKIP_LIST {
+    public SortedMap create() { return new ConcurrentSkipListCountyMap(); }
+  };
+
+  /**
+   * Returns a new empty map of this kind, ordered by county code.
+   * @return an empty map
+   */
+  public abstract SortedMap create();
+
+  /** Returns whether maps of this kind may be shared between threads. */
+  public boolean isThreadSafe() { return this != AVL && this != OFF_HEAP_AVL; }
+}
@@ -0,0 +1,314 @@
+package countydb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only sorted map served directly from a memory-mapped index file,
+ * for processes that only ever look records up.
+ *
+ * An index file starts with a header holding a magic number, the format
+ * version and the number of records n. It continues with the n county codes
+ * in increasing order, then the n offsets of the records, and finally the
+ * records themselves in the encoding of CountyCodec. Codes and offsets are
+ * 4-byte ints, so an index file is limited to 2GB.
+ *
+ * Opening an index maps the file and checks its header; nothing else is
+ * read, so it takes the same time whatever the size of the file, and the
+ * pages of the file are shared through the page cache by every process
+ * mapping it. Searches are binary searches over the mapped codes, and a
+ * County is decoded only when the value of an entry is asked for. Since
+ * the map cannot change, it may be shared freely between threads.
+ */
+public class MappedCountyIndex extends AbstractMap implements SortedMap {
+
+  /** The first four bytes of every index file ("CTYX"). */
+  public static final int MAGIC = 0x43545958;
+
+  /** The format version written by this class. */
+  public static final int VERSION = 1;
+
+  /** Size of the header: magic number, version and record count. */
+  private static final int HEADER = 4 + 4 + 4;
+
+  /** Size of the buffer used for writing. */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private final ByteBuffer data;     // the whole file, read-only
+  private final IntBuffer codes;     // the sorted county codes
+  private final IntBuffer offsets;   // the file offset of each record
+  private final int n;
+
+  /**
+   * Maps the given index file.
+   * @param file  an index written by {@link #write}
+   * @throws IOException if the file cannot be mapped or is not an index
+   */
+  public MappedCountyIndex(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < HEADER || length > Integer.MAX_VALUE)
+        throw new IOException(file + " is not a county index");
+      data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);   // valid after close
+    }
+    if (data.getInt(0) != MAGIC)
+      throw new IOException(file + " is not a county index");
+    int version = data.getInt(4);
+    if (version != VERSION)
+      throw new IOException("Unsupported index version " + version);
+    n = data.getInt(8);
+    if (n < 0 || HEADER + 8L * n > data.capacity())
+      throw new IOException("Damaged index header in " + file);
+    codes = slice(HEADER, n);
+    offsets = slice(HEADER + 4 * n, n);
+  }
+
+  /** Returns a view of count ints of the file starting at the given offset. */
+  private IntBuffer slice(int offset, int count) {
+    ByteBuffer view = data.duplicate();
+    view.position(offset).limit(offset + 4 * count);
+    return view.slice().asIntBuffer();
+  }
+
+  /**
+   * Writes the entries of the given map to an index file. The index is
+   * written to a temporary file first and moved over the target at the end.
+   * @param map  the map to save
+   * @param file  the file receiving the index
+   * @return the number of records written
+   * @throws IOException if the file cannot be written, or the index would exceed 2GB
+   */
+  public static int write(SortedMap map, Path file) throws IOException {
+    int count = map.size();
+    int[] keys = new int[count];
+    int[] starts = new int[count];
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.WRITE)) {
+      ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      long position = HEADER + 8L * count;       // codes and offsets come first
+      channel.position(position);
+      int i = 0;
+      for (Entry e : map.entrySet()) {
+        County c = e.getValue();
+        int size = CountyCodec.encodedSize(c);
+        if (position + size > Integer.MAX_VALUE)
+          throw new IOException("Index would exceed 2GB");
+        if (buf.remaining() < size)
+          drain(buf, channel);
+        keys[i] = e.getKey();
+        starts[i++] = (int) position;
+        CountyCodec.encode(c, buf);
+        position += size;
+      }
+      drain(buf, channel);
+
+      channel.position(0);
+      buf.putInt(MAGIC).putInt(VERSION).putInt(count);
+      for (int[] column : new int[][] {keys, starts})
+        for (int value : column) {
+          if (!buf.hasRemaining())
+            drain(buf, channel);
+          buf.putInt(value);
+        }
+      drain(buf, channel);
+      channel.force(false);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return count;
+  }
+
+  /** Writes out the bytes held in buf and empties it. */
+  private static void drain(ByteBuffer buf, FileChannel channel) throws IOException {
+    buf.flip();
+    while (buf.hasRemaining())
+      channel.write(buf);
+    buf.clear();
+  }
+
+  //---------------- searching ----------------
+
+  /** Rejects a null key in the same way as checkKey. */
+  private static int keyOf(Integer key) throws IllegalArgumentException {
+    if (key == null) throw new IllegalArgumentException("Incompatible key");
+    return key;
+  }
+
+  /** Returns the index of the first code not less than key (n if there is none). */
+  private int ceilingIndex(int key) {
+    int lo = 0, hi = n;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (codes.get(mid) < key)
+        lo = mid + 1;
+      else
+        hi = mid;
+    }
+    return lo;
+  }
+
+  /** Returns the index of the first code greater than key (n if there is none). */
+  private int higherIndex(int key) {
+    return (key == Integer.MAX_VALUE ? n : ceilingIndex(key + 1));
+  }
+
+  /** Decodes the county stored at the given index. */
+  private County decode(int i) {
+    ByteBuffer record = data.duplicate();
+    record.position(offsets.get(i));
+    return CountyCodec.decode(record);
+  }
+
+  /** Returns the entry at the given index (or null if the index is out of range). */
+  private Entry entryAt(int i) {
+    return (i < 0 || i >= n ? null : new IndexEntry(i));
+  }
+
+  //---------------- nested IndexEntry class ----------------
+  /** An entry whose county is decoded from the mapping when first asked for. */
+  private class IndexEntry implements Entry {
+    private final int index;
+    private County value = null;
+
+    IndexEntry(int index) { this.index = index; }
+
+    public Integer getKey() { return codes.get(index); }
+
+    public County getValue() {
+      if (value == null)
+        value = decode(index);
+      return value;
+    }
+
+    /** Returns string representation (for debugging only) */
+    public String toString() { return "<" + getKey() + ", " + getValue() + ">"; }
+  } //----------- end of nested IndexEntry class -----------
+
+  //---------------- map operations ----------------
+
+  @Override
+  public int size() { return n; }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    int k = keyOf(key);
+    int i = ceilingIndex(k);
+    return (i < n && codes.get(i) == k ? decode(i) : null);
+  }
+
+  /**
+   * Not supported: the index is read-only.
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public County put(Integer key, County value) {
+    throw new UnsupportedOperationException("County index is read-only");
+  }
+
+  /**
+   * Not supported: the index is read-only.
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public County remove(Integer key) {
+    throw new UnsupportedOperationException("County index is read-only");
+  }
+
+  @Override
+  public Entry firstEntry() { return entryAt(0); }
+
+  @Override
+  public Entry lastEntry() { return entryAt(n - 1); }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    return entryAt(ceilingIndex(keyOf(key)));
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    return entryAt(higherIndex(keyOf(key)) - 1);
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    return entryAt(ceilingIndex(keyOf(key)) - 1);
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    return entryAt(higherIndex(keyOf(key)));
+  }
+
+  //---------------- nested RangeIterable class ----------------
+  /** The entries with indices in [from, to), produced one at a time (last first, if descending). */
+  private class RangeIterable implements Iterable<Entry> {
+    private final int from, to;
+    private final boolean descending;
+
+    RangeIterable(int from, int to, boolean descending) {
+      this.from = from;
+      this.to = to;
+      this.descending = descending;
+    }
+
+    public Iterator<Entry> iterator() {
+      return new Iterator<Entry>() {
+        private int next = (descending ? to - 1 : from);
+        public boolean hasNext() { return (descending ? next >= from : next < to); }
+        public Entry next() {
+          if (!hasNext()) throw new NoSuchElementException("no more entries");
+          return new IndexEntry(descending ? next-- : next++);
+        }
+        public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+      };
+    }
+  } //----------- end of nested RangeIterable class -----------
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map.
+   * Counties are decoded as the entries are visited.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() { return new RangeIterable(0, n, false); }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * Counties are decoded as the entries are visited.
+   * @return iterable with keys in desired range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    int from = ceilingIndex(keyOf(fromKey));
+    int to = ceilingIndex(keyOf(toKey));
+    return new RangeIterable(from, Math.max(from, to), false);
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key. Counties are decoded as the entries are visited.
+   * @return iterable with keys in desired range, greatest first
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    int from = ceilingIndex(keyOf(fromKey));
+    int to = ceilingIndex(keyOf(toKey));
+    return new RangeIterable(from, Math.max(from, to), true);
+  }
+}
@@ -0,0 +1,114 @@
+package countydb;
+
+import java.util.Arrays;
+
+/**
+ * An array-backed AVL tree map whose county records live off the Java
+ * heap, in an OffHeapCountyStore.
+ *
+ * The tree itself is the int-array layout of ArrayAVLTreeMap, and the value
+ * of each slot is a long handle into the store, so the heap holds a fixed
+ * number of arrays whatever the number of records, and the old generation
+ * has no per-record objects for the collector to trace. Values are
+ * materialized as new County objects when they are read; changing such an
+ * object does not change the map. getPopulation reads a population without
+ * materializing anything.
+ *
+ * Records replaced or removed stay in the store as garbage until it
+ * exceeds the live data, at which point the live records are copied into a
+ * fresh store and the old one is left for the collector to release.
+ */
+public class OffHeapAVLTreeMap extends ArrayAVLTreeMap {
+
+  /**
+   * Returned by getPopulation for a code that is not in the map (or maps to
+   * null); it lies outside the int range, so no population can equal it.
+   */
+  public static final long NO_POPULATION = Long.MIN_VALUE;
+
+  /** Amount of garbage below which the store is never compacted. */
+  private static final long MIN_COMPACT_BYTES = 16 << 20;
+
+  // the store handle of each slot's value (assigned before our initializers run)
+  private long[] handles;
+
+  private OffHeapCountyStore store = new OffHeapCountyStore();
+
+  /** Constructs an empty map ordered by county code. */
+  public OffHeapAVLTreeMap() { super(); }
+
+  /**
+   * Constructs an empty map with room for the given number of entries
+   * before the node arrays must grow.
+   * @param capacity  expected number of entries
+   */
+  public OffHeapAVLTreeMap(int capacity) { super(capacity); }
+
+  //---------------- value storage hooks ----------------
+
+  @Override
+  protected void storeValue(int slot, County value) {
+    long old = handles[slot];
+    handles[slot] = store.add(value);
+    if (old != OffHeapCountyStore.NULL)
+      release(old);
+  }
+
+  @Override
+  protected County loadValue(int slot) { return store.get(handles[slot]); }
+
+  @Override
+  protected void moveValue(int from, int to) {
+    long old = handles[to];
+    handles[to] = handles[from];
+    handles[from] = OffHeapCountyStore.NULL;     // so freeing the source keeps the record
+    release(old);
+  }
+
+  @Override
+  protected void clearValue(int slot) {
+    long old = handles[slot];
+    handles[slot] = OffHeapCountyStore.NULL;
+    release(old);
+  }
+
+  @Override
+  protected void growValues(int capacity) {
+    int from = (handles == null ? 0 : handles.length);
+    handles = (handles == null ? new long[capacity] : Arrays.copyOf(handles, capacity));
+    Arrays.fill(handles, from, capacity, OffHeapCountyStore.NULL);
+  }
+
+  //---------------- off-heap access ----------------
+
+  /**
+   * Returns the population of the county with the given code without
+   * materializing the record.
+   * @param k  the county code
+   * @return the population, or NO_POPULATION if the code is not in the map (or maps to null)
+   */
+  public long getPopulation(int k) {
+    int p = search(k);
+    long handle = (p == NIL ? OffHeapCountyStore.NULL : handles[p]);
+    return (handle == OffHeapCountyStore.NULL ? NO_POPULATION : store.getPopulation(handle));
+  }
+
+  /** Returns the number of off-heap bytes taken by live records. */
+  public long getOffHeapBytes() { return store.getUsedBytes() - store.getFreedBytes(); }
+
+  /** Frees a record, compacting the store once most of it is garbage. */
+  private void release(long handle) {
+    store.free(handle);
+    long garbage = store.getFreedBytes();
+    if (garbage >= MIN_COMPACT_BYTES && garbage > store.getUsedBytes() - garbage)
+      compact();
+  }
+
+  /** Copies the live records into a new store, dropping the garbage. */
+  public void compact() {
+    OffHeapCountyStore fresh = new OffHeapCountyStore();
+    for (int slot = 0; slot < handles.length; slot++)
+      handles[slot] = fresh.copy(store, handles[slot]);
+    store = fresh;
+  }
+}
@@ -0,0 +1,157 @@
+package countydb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * An append-only store of county records kept outside the Java heap, in
+ * direct ByteBuffers, so that the records add nothing to the work of the
+ * garbage collector.
+ *
+ * Each record is written in the encoding of CountyCodec and identified by
+ * a long handle combining the index of its chunk and its offset within it.
+ * The code and population of a record can be read through its handle
+ * without creating any object; get decodes a new County each time it is
+ * called, so changes made to the returned object are not stored.
+ *
+ * Space is never reused: freeing a record only counts its bytes as
+ * garbage, which the owner of the handles reclaims by copying the live
+ * records into a new store (see OffHeapAVLTreeMap). Direct memory is
+ * limited by the -XX:MaxDirectMemorySize option of the JVM.
+ */
+public class OffHeapCountyStore {
+
+  /** The handle standing for a null county. */
+  public static final long NULL = -1L;
+
+  /** Default size of the largest direct buffer. */
+  public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+
+  /** Size of the first direct buffer; each later one is twice the previous, up to the chunk size. */
+  private static final int FIRST_CHUNK_SIZE = 64 << 10;
+
+  private final int chunkSize;
+  private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+  private ByteBuffer current = null;   // the chunk receiving new records
+  private long usedBytes = 0;
+  private long freedBytes = 0;
+  private long allocatedBytes = 0;
+
+  /** Constructs an empty store using the default chunk size. */
+  public OffHeapCountyStore() { this(DEFAULT_CHUNK_SIZE); }
+
+  /**
+   * Constructs an empty store allocating direct memory in chunks of at most the given size.
+   * @param chunkSize  size of the largest direct buffer, which must hold the largest record
+   */
+  public OffHeapCountyStore(int chunkSize) {
+    if (chunkSize < CountyCodec.HEADER_SIZE + Short.MAX_VALUE)
+      throw new IllegalArgumentException("Chunk size is too small for the largest record");
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Copies a county into the store.
+   * @param c  the county to store (may be null)
+   * @return the handle of the stored record (NULL if c is null)
+   */
+  public long add(County c) {
+    if (c == null) return NULL;
+    int size = CountyCodec.encodedSize(c);
+    long handle = reserve(size);
+    CountyCodec.encode(c, current);
+    usedBytes += size;
+    return handle;
+  }
+
+  /**
+   * Makes sure the current chunk has room for a record of the given size,
+   * returning the handle the record will have.
+   */
+  private long reserve(int size) {
+    if (current == null || current.remaining() < size) {
+      int capacity = (current == null ? FIRST_CHUNK_SIZE : 2 * current.capacity());
+      current = ByteBuffer.allocateDirect(Math.max(Math.min(capacity, chunkSize), size));
+      chunks.add(current);
+      allocatedBytes += current.capacity();
+    }
+    return ((long) (chunks.size() - 1) << 32) | current.position();
+  }
+
+  /**
+   * Copies a record of another store into this one without decoding it.
+   * @param source  the store holding the record
+   * @param handle  the handle of the record in source
+   * @return the handle of the copy (NULL if handle is NULL)
+   */
+  public long copy(OffHeapCountyStore source, long handle) {
+    if (handle == NULL) return NULL;
+    ByteBuffer record = source.chunk(handle).duplicate();
+    int from = offset(handle);
+    int size = CountyCodec.HEADER_SIZE + Math.max(0, record.getShort(from + 8));
+    record.position(from).limit(from + size);
+    long copy = reserve(size);
+    current.put(record);
+    usedBytes += size;
+    return copy;
+  }
+
+  /**
+   * Marks the record with the given handle as garbage. The handle must not
+   * be used afterwards.
+   * @param handle  a handle returned by add
+   */
+  public void free(long handle) {
+    if (handle == NULL) return;
+    int length = chunk(handle).getShort(offset(handle) + 8);
+    freedBytes += CountyCodec.HEADER_SIZE + Math.max(0, length);
+  }
+
+  private ByteBuffer chunk(long handle) { return chunks.get((int) (handle >>> 32)); }
+
+  private static int offset(long handle) { return (int) handle; }
+
+  /**
+   * Returns a new County holding the record with the given handle.
+   * @param handle  a handle returned by add
+   * @return the decoded county (or null if handle is NULL)
+   */
+  public County get(long handle) {
+    if (handle == NULL) return null;
+    ByteBuffer record = chunk(handle).duplicate();
+    record.position(offset(handle));
+    return CountyCodec.decode(record);
+  }
+
+  /** Returns the county code of the record with the given (non-NULL) handle. */
+  public int getCountyCode(long handle) {
+    return chunk(handle).getInt(offset(handle));
+  }
+
+  /** Returns the population of the record with the given (non-NULL) handle. */
+  public int getPopulation(long handle) {
+    return chunk(handle).getInt(offset(handle) + 4);
+  }
+
+  /** Returns the name of the record with the given (non-NULL) handle. */
+  public String getCountyName(long handle) {
+    ByteBuffer buf = chunk(handle);
+    int at = offset(handle) + CountyCodec.HEADER_SIZE;
+    int length = buf.getShort(at - 2);
+    if (length < 0) return null;
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++)
+      bytes[i] = buf.get(at + i);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Returns the number of bytes taken by records, freed ones included. */
+  public long getUsedBytes() { return usedBytes; }
+
+  /** Returns the number of bytes taken by freed records. */
+  public long getFreedBytes() { return freedBytes; }
+
+  /** Returns the amount of direct memory allocated by the store. */
+  public long getAllocatedBytes() { return allocatedBytes; }
+}
@@ -0,0 +1,67 @@
+package countydb;
+
+/**
+ * Instrumentation collected by a TreeMap: a latency histogram for every
+ * kind of map operation, the number of key comparisons made while
+ * searching the tree, and the number of rotations made while rebalancing.
+ */
+public class OperationStats {
+
+  /** The map operations whose latency is recorded. */
+  public enum Operation { GET, PUT, REMOVE }
+
+  private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+  private long comparisons = 0;
+  private long rotations = 0;
+
+  /** Constructs an empty set of statistics. */
+  public OperationStats() {
+    for (int i = 0; i < latencies.length; i++)
+      latencies[i] = new LatencyHistogram();
+  }
+
+  /** Records the latency of one operation. */
+  public void recordLatency(Operation op, long nanos) {
+    latencies[op.ordinal()].record(nanos);
+  }
+
+  /** Adds to the number of key comparisons. */
+  public void addComparisons(long count) { comparisons += count; }
+
+  /** Adds to the number of rotations. */
+  public void addRotations(long count) { rotations += count; }
+
+  /** Returns the latency histogram of the given operation. */
+  public LatencyHistogram getLatency(Operation op) { return latencies[op.ordinal()]; }
+
+  /** Returns the number of key comparisons made while searching. */
+  public long getComparisons() { return comparisons; }
+
+  /** Returns the number of rotations made while rebalancing. */
+  public long getRotations() { return rotations; }
+
+  /** Adds all statistics of another instance to this one. */
+  public void add(OperationStats other) {
+    for (int i = 0; i < latencies.length; i++)
+      latencies[i].add(other.latencies[i]);
+    comparisons += other.comparisons;
+    rotations += other.rotations;
+  }
+
+  /** Discards all statistics. */
+  public void reset() {
+    for (LatencyHistogram h : latencies)
+      h.reset();
+    comparisons = rotations = 0;
+  }
+
+  /** Returns a table of the statistics (one line per operation). */
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Operation op : Operation.values())
+      sb.append(String.format("%-7s %s%n", op.name().toLowerCase(), latencies[op.ordinal()]));
+    sb.append("comparisons=").append(comparisons);
+    sb.append(" rotations=").append(rotations);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,177 @@
+package countydb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a county file on several cores and builds an AVLTreeMap from it
+ * in a single bulk step.
+ *
+ * The file is split into byte ranges whose boundaries are moved forward
+ * to the start of the next line, so that no record straddles two ranges.
+ * Each range is memory-mapped and parsed by its own CountyLoader on a
+ * fork-join pool. The per-range results are concatenated in file order,
+ * sorted by county code with a stable parallel sort and handed to
+ * AVLTreeMap.bulkLoad. Duplicate codes therefore resolve exactly as they
+ * would when loading the file sequentially: the last record wins.
+ */
+public class ParallelCountyLoader {
+
+  /** Smallest range handed to a single task. */
+  private static final long MIN_CHUNK = 1 << 20;
+
+  /** Largest range handed to a single task (a mapping must stay below 2GB). */
+  private static final long MAX_CHUNK = 1 << 28;
+
+  private static final Comparator<County> BY_CODE = Comparator.comparingInt(County::getCountyCode);
+
+  private final ForkJoinPool pool;
+  private long records = 0;
+  private long elapsedNanos = 0;
+
+  /** Constructs a loader running on the common fork-join pool. */
+  public ParallelCountyLoader() { this(ForkJoinPool.commonPool()); }
+
+  /**
+   * Constructs a loader running on the given pool.
+   * @param pool  the pool parsing the file ranges
+   */
+  public ParallelCountyLoader(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Reads the given file and builds a map holding its records.
+   * @param file  the file to read
+   * @return a new map holding the records of the file
+   * @throws IOException if the file cannot be read or contains a malformed record
+   */
+  public AVLTreeMap load(Path file) throws IOException {
+    return AVLTreeMap.bulkLoad(parse(file));
+  }
+
+  /**
+   * Reads the given file, returning its records sorted by county code
+   * (records sharing a code stay in file order).
+   * @param file  the file to read
+   * @return the records of the file
+   * @throws IOException if the file cannot be read or contains a malformed record
+   */
+  public County[] parse(Path file) throws IOException {
+    long start = System.nanoTime();
+    County[] all;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = splitPoints(channel);
+      List<Callable<List<County>>> tasks = new ArrayList<>();
+      for (int i = 0; i + 1 < bounds.length; i++) {
+        final long from = bounds[i], to = bounds[i + 1];
+        tasks.add(() -> parseRange(channel, from, to));
+      }
+      List<List<County>> parts = new ArrayList<>();
+      int total = 0;
+      for (Future<List<County>> f : pool.invokeAll(tasks)) {
+        List<County> part = join(f);
+        parts.add(part);
+        total += part.size();
+      }
+      all = new County[total];
+      int n = 0;
+      for (List<County> part : parts)              // concatenate in file order
+        for (County c : part)
+          all[n++] = c;
+    }
+    Arrays.parallelSort(all, BY_CODE);              // stable for objects
+    records = all.length;
+    elapsedNanos = System.nanoTime() - start;
+    return all;
+  }
+
+  /** Returns the number of records read by the last load. */
+  public long getRecordCount() { return records; }
+
+  /** Returns the duration of the last load in nanoseconds. */
+  public long getElapsedNanos() { return elapsedNanos; }
+
+  /** Returns the throughput of the last load in records per second. */
+  public double getRecordsPerSecond() {
+    return (elapsedNanos == 0 ? 0.0 : records * 1e9 / elapsedNanos);
+  }
+
+  /** Returns the result of a parsing task, rethrowing its IOException. */
+  private static List<County> join(Future<List<County>> f) throws IOException {
+    try {
+      return f.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException)
+        throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Returns the boundaries of the ranges to parse: the first is 0, the last
+   * is the file size, and every other one is the start of a line.
+   */
+  private long[] splitPoints(FileChannel channel) throws IOException {
+    long size = channel.size();
+    long chunk = size / (4L * pool.getParallelism());
+    chunk = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, chunk));
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(0L);
+    long last = 0;
+    for (long p = chunk; p < size; p += chunk) {
+      long lineStart = nextLineStart(channel, Math.max(p, last));
+      if (lineStart >= size)
+        break;
+      if (lineStart > last) {
+        bounds.add(lineStart);
+        last = lineStart;
+      }
+    }
+    bounds.add(size);
+    long[] result = new long[bounds.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = bounds.get(i);
+    return result;
+  }
+
+  /** Returns the offset just after the first newline at or after position p - 1. */
+  private static long nextLineStart(FileChannel channel, long p) throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(4096);
+    long pos = p - 1;                    // a line starting exactly at p is kept
+    while (true) {
+      buf.clear();
+      int n = channel.read(buf, pos);
+      if (n < 0)
+        return channel.size();
+      for (int i = 0; i < n; i++)
+        if (buf.get(i) == '\n')
+          return pos + i + 1;
+      pos += n;
+    }
+  }
+
+  /** Parses the records of the file between the given offsets. */
+  private static List<County> parseRange(FileChannel channel, long from, long to)
+      throws IOException {
+    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    List<County> result = new ArrayList<>();
+    new CountyLoader().parse(buf, 0, (int) (to - from), from, result::add);
+    return result;
+  }
+}
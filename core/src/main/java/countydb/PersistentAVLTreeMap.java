@@ -0,0 +1,438 @@
+package countydb;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A sorted map using a persistent AVL tree, whose nodes are never modified
+ * once they have been published.
+ *
+ * An update copies the nodes on the path from the root to the changed
+ * position (rebalancing the copies on the way back up) and shares every
+ * other subtree with the previous version of the tree. The new root is then
+ * installed with a single compare-and-set on an atomic reference; should
+ * another update have been installed in the meantime, the update is retried
+ * against the newer version.
+ *
+ * A reader takes the root once and works on that version throughout, so
+ * lookups, navigation and iteration never lock, never retry and always see
+ * a consistent state of the map, however many updates run concurrently.
+ * For the same reason snapshot() costs a single read of the root.
+ */
+public class PersistentAVLTreeMap extends AbstractSortedMap {
+
+  //---------------- nested Node class ----------------
+  /** Immutable node of the tree. */
+  protected static final class Node {
+    final int key;           // the county code
+    final County value;      // the associated county record
+    final Node left;         // the left subtree (or null)
+    final Node right;        // the right subtree (or null)
+    final int height;        // height of the subtree rooted at this node
+    final int size;          // number of entries in the subtree rooted at this node
+
+    Node(int key, County value, Node left, Node right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      height = 1 + Math.max(height(left), height(right));
+      size = 1 + size(left) + size(right);
+    }
+  } //----------- end of nested Node class -----------
+
+  /** The root of the current version of the tree (null if the map is empty). */
+  private final AtomicReference<Node> root;
+
+  /** Constructs an empty map ordered by county code. */
+  public PersistentAVLTreeMap() { this((Node) null); }
+
+  /** Constructs a map whose current version is rooted at the given node. */
+  private PersistentAVLTreeMap(Node root) {
+    super();
+    this.root = new AtomicReference<>(root);
+  }
+
+  /**
+   * Returns a map holding the current entries of this map, in constant time.
+   * The two maps share their nodes but are otherwise independent: later
+   * updates to either of them are not seen by the other.
+   * @return a point-in-time copy of this map
+   */
+  public PersistentAVLTreeMap snapshot() {
+    return new PersistentAVLTreeMap(root.get());
+  }
+
+  /**
+   * Returns the number of entries in the map.
+   * @return number of entries in the map
+   */
+  @Override
+  public int size() { return size(root.get()); }
+
+  private static int height(Node p) { return (p == null ? 0 : p.height); }
+
+  private static int size(Node p) { return (p == null ? 0 : p.size); }
+
+  /** Unboxes a key, rejecting null in the same way as checkKey. */
+  private static int keyOf(Integer key) throws IllegalArgumentException {
+    if (key == null) throw new IllegalArgumentException("Incompatible key");
+    return key;
+  }
+
+  /** Returns a snapshot entry for the given node (or null if node is null). */
+  private static Entry entryOf(Node node) {
+    return (node == null ? null : new MapEntry(node.key, node.value));
+  }
+
+  //---------------- lookups ----------------
+
+  /**
+   * Returns the value associated with the specified key, or null if no such entry exists.
+   * @param key  the key whose associated value is to be returned
+   * @return the associated value, or null if no such entry exists
+   */
+  public County get(int key) {
+    Node walk = root.get();
+    while (walk != null) {
+      if (key < walk.key)
+        walk = walk.left;
+      else if (key > walk.key)
+        walk = walk.right;
+      else
+        return walk.value;               // key found
+    }
+    return null;                         // key not found
+  }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    return get(keyOf(key));
+  }
+
+  //---------------- updates ----------------
+
+  /**
+   * Associates the given value with the given key. If an entry with
+   * the key was already in the map, this replaced the previous value
+   * with the new one and returns the old value. Otherwise, a new
+   * entry is added and null is returned.
+   * @param key    key with which the specified value is to be associated
+   * @param value  value to be associated with the specified key
+   * @return the previous value associated with the key (or null, if no such entry)
+   */
+  public County put(int key, County value) {
+    County[] old = new County[1];
+    while (true) {
+      Node current = root.get();
+      old[0] = null;
+      Node updated = insert(current, key, value, old);
+      if (root.compareAndSet(current, updated))
+        return old[0];
+    }
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    return put(keyOf(key), value);
+  }
+
+  /**
+   * Removes the entry with the specified key, if present, and returns
+   * its associated value. Otherwise does nothing and returns null.
+   * @param key  the key whose entry is to be removed from the map
+   * @return the previous value associated with the removed key, or null if no such entry exists
+   */
+  public County remove(int key) {
+    County[] old = new County[1];
+    while (true) {
+      Node current = root.get();
+      old[0] = null;
+      Node updated = delete(current, key, old);
+      if (updated == current || root.compareAndSet(current, updated))
+        return old[0];                   // nothing to publish if key was absent
+    }
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    return remove(keyOf(key));
+  }
+
+  /**
+   * Returns a copy of the subtree rooted at p with the given entry added or
+   * replaced, storing the value it replaces (if any) in old[0].
+   */
+  private static Node insert(Node p, int key, County value, County[] old) {
+    if (p == null)
+      return new Node(key, value, null, null);
+    if (key < p.key)
+      return balance(p.key, p.value, insert(p.left, key, value, old), p.right);
+    if (key > p.key)
+      return balance(p.key, p.value, p.left, insert(p.right, key, value, old));
+    old[0] = p.value;                    // replacing existing key
+    return new Node(key, value, p.left, p.right);
+  }
+
+  /**
+   * Returns a copy of the subtree rooted at p without the given key, storing
+   * the removed value in old[0]. Returns p itself if the key is absent.
+   */
+  private static Node delete(Node p, int key, County[] old) {
+    if (p == null)
+      return null;                       // key not found
+    if (key < p.key) {
+      Node left = delete(p.left, key, old);
+      return (left == p.left ? p : balance(p.key, p.value, left, p.right));
+    }
+    if (key > p.key) {
+      Node right = delete(p.right, key, old);
+      return (right == p.right ? p : balance(p.key, p.value, p.left, right));
+    }
+    old[0] = p.value;
+    if (p.left == null) return p.right;  // at most one child: promote it
+    if (p.right == null) return p.left;
+    Node successor = p.right;            // both children: use the successor's entry
+    while (successor.left != null)
+      successor = successor.left;
+    return balance(successor.key, successor.value, p.left, deleteMin(p.right));
+  }
+
+  /** Returns a copy of the subtree rooted at p without its minimal entry. */
+  private static Node deleteMin(Node p) {
+    if (p.left == null)
+      return p.right;
+    return balance(p.key, p.value, deleteMin(p.left), p.right);
+  }
+
+  /**
+   * Returns a new node for the given entry and subtrees, whose heights may
+   * differ by at most two, restoring the AVL property with a single or double
+   * rotation if necessary.
+   */
+  private static Node balance(int key, County value, Node left, Node right) {
+    int diff = height(left) - height(right);
+    if (diff > 1) {                      // left side too tall
+      if (height(left.left) >= height(left.right))
+        return rotateRight(key, value, left, right);
+      Node x = left.right;               // double rotation
+      return new Node(x.key, x.value,
+                      new Node(left.key, left.value, left.left, x.left),
+                      new Node(key, value, x.right, right));
+    }
+    if (diff < -1) {                     // right side too tall
+      if (height(right.right) >= height(right.left))
+        return rotateLeft(key, value, left, right);
+      Node x = right.left;               // double rotation
+      return new Node(x.key, x.value,
+                      new Node(key, value, left, x.left),
+                      new Node(right.key, right.value, x.right, right.right));
+    }
+    return new Node(key, value, left, right);
+  }
+
+  private static Node rotateRight(int key, County value, Node left, Node right) {
+    return new Node(left.key, left.value, left.left,
+                    new Node(key, value, left.right, right));
+  }
+
+  private static Node rotateLeft(int key, County value, Node left, Node right) {
+    return new Node(right.key, right.value,
+                    new Node(key, value, left, right.left), right.right);
+  }
+
+  //---------------- SortedMap behaviors ----------------
+
+  @Override
+  public Entry firstEntry() {
+    Node p = root.get();
+    if (p == null) return null;
+    while (p.left != null)
+      p = p.left;
+    return entryOf(p);
+  }
+
+  @Override
+  public Entry lastEntry() {
+    Node p = root.get();
+    if (p == null) return null;
+    while (p.right != null)
+      p = p.right;
+    return entryOf(p);
+  }
+
+  /** Returns the entry with least key greater than or equal to the given key. */
+  public Entry ceilingEntry(int key) {
+    Node walk = root.get(), best = null;
+    while (walk != null) {
+      if (key < walk.key) { best = walk; walk = walk.left; }
+      else if (key > walk.key) walk = walk.right;
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    return ceilingEntry(keyOf(key));
+  }
+
+  /** Returns the entry with greatest key less than or equal to the given key. */
+  public Entry floorEntry(int key) {
+    Node walk = root.get(), best = null;
+    while (walk != null) {
+      if (key > walk.key) { best = walk; walk = walk.right; }
+      else if (key < walk.key) walk = walk.left;
+      else return entryOf(walk);                   // exact match
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    return floorEntry(keyOf(key));
+  }
+
+  /** Returns the entry with greatest key strictly less than the given key. */
+  public Entry lowerEntry(int key) {
+    Node walk = root.get(), best = null;
+    while (walk != null) {
+      if (walk.key < key) { best = walk; walk = walk.right; }
+      else walk = walk.left;
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    return lowerEntry(keyOf(key));
+  }
+
+  /** Returns the entry with least key strictly greater than the given key. */
+  public Entry higherEntry(int key) {
+    Node walk = root.get(), best = null;
+    while (walk != null) {
+      if (walk.key > key) { best = walk; walk = walk.left; }
+      else walk = walk.right;
+    }
+    return entryOf(best);
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    return higherEntry(keyOf(key));
+  }
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map, as
+   * of the moment of the call. The entries are found as the iteration
+   * proceeds, from the version of the tree current at the time of the call.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    Node p = root.get();
+    return () -> new EntryIterator(p, Integer.MIN_VALUE, Integer.MAX_VALUE, true, false);
+  }
+
+  //---------------- nested EntryIterator class ----------------
+  /**
+   * Reports the entries of one version of the tree with keys from fromKey
+   * inclusive to toKey (inclusive if toInclusive is set), in key order or,
+   * if descending, in reverse. The nodes never change, so the iteration
+   * needs no locking and may proceed while the map is updated. A stack holds
+   * the nodes whose nearer subtrees are being reported, so the space used is
+   * proportional to the height.
+   */
+  private static class EntryIterator implements Iterator<Entry> {
+    private final ArrayDeque<Node> stack = new ArrayDeque<>();
+    private final int fromKey, toKey;
+    private final boolean toInclusive;
+    private final boolean descending;
+
+    EntryIterator(Node root, int fromKey, int toKey, boolean toInclusive, boolean descending) {
+      this.fromKey = fromKey;
+      this.toKey = toKey;
+      this.toInclusive = toInclusive;
+      this.descending = descending;
+      pushPath(root);
+      trim();
+    }
+
+    private boolean beforeRange(Node p) { return p.key < fromKey; }
+
+    private boolean afterRange(Node p) { return p.key > toKey || (p.key == toKey && !toInclusive); }
+
+    /**
+     * Pushes the nodes on p's leftmost path (rightmost, if descending),
+     * skipping those on the near side of the range along with their near subtrees.
+     */
+    private void pushPath(Node p) {
+      while (p != null) {
+        if (descending ? afterRange(p) : beforeRange(p))
+          p = (descending ? p.left : p.right);
+        else {
+          stack.push(p);
+          p = (descending ? p.right : p.left);
+        }
+      }
+    }
+
+    /** Ends the iteration once the next node is beyond the range. */
+    private void trim() {
+      Node p = stack.peek();
+      if (p != null && (descending ? beforeRange(p) : afterRange(p)))
+        stack.clear();
+    }
+
+    public boolean hasNext() { return !stack.isEmpty(); }
+
+    public Entry next() {
+      if (stack.isEmpty()) throw new NoSuchElementException("no more entries");
+      Node p = stack.pop();
+      pushPath(descending ? p.left : p.right);
+      trim();
+      return entryOf(p);
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested EntryIterator class -----------
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, as of the
+   * moment of the call. Each iteration descends to <code>fromKey</code> and
+   * walks forward until <code>toKey</code>, taking O(log n + k) time for k
+   * entries.
+   * @return iterable with keys in desired range
+   */
+  public Iterable<Entry> subMap(int fromKey, int toKey) {
+    Node p = root.get();
+    return () -> new EntryIterator(p, fromKey, toKey, false, false);
+  }
+
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    return subMap(keyOf(fromKey), keyOf(toKey));
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key, as of the moment of the call.
+   * @return iterable with keys in desired range, greatest first
+   */
+  public Iterable<Entry> descendingSubMap(int fromKey, int toKey) {
+    Node p = root.get();
+    return () -> new EntryIterator(p, fromKey, toKey, false, true);
+  }
+
+  @Override
+  public Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    return descendingSubMap(keyOf(fromKey), keyOf(toKey));
+  }
+}
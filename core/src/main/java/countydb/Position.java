@@ -21,6 +21,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 /**
  * An interface for a position which is an abstraction for the
  * location at which a single element is stored in a positional
@@ -0,0 +1,327 @@
+package countydb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A sorted map partitioned into independent AVL trees, each guarded by its
+ * own read-write lock, so that writers to different shards proceed in
+ * parallel and every tree holds only a fraction of the entries.
+ *
+ * A router maps each key to the index of its shard. By default keys are
+ * routed by state: a five-digit FIPS county code such as 06071 is the state
+ * code (06) followed by the county, so code / 1000 selects one shard per
+ * state. Such a router is order-preserving (a greater key never goes to a
+ * lower shard), which lets ordered queries visit the shards in sequence and
+ * stop as soon as they are answered. Any other router, for instance a hash,
+ * is supported too; ordered queries then consult every shard and merge the
+ * results.
+ *
+ * Each shard is read or updated under its own lock only, so a query
+ * spanning several shards is not atomic with respect to concurrent writers.
+ */
+public class ShardedCountyMap extends AbstractMap implements SortedMap {
+
+  /** Number of shards used when routing by state (state codes are two digits). */
+  public static final int STATE_SHARDS = 100;
+
+  private final ConcurrentAVLTreeMap[] shards;
+  private final IntUnaryOperator router;
+  private final boolean ordered;
+
+  /** Constructs an empty map with one shard per state code. */
+  public ShardedCountyMap() {
+    this(STATE_SHARDS, key -> Math.max(0, Math.min(STATE_SHARDS - 1, key / 1000)), true);
+  }
+
+  /**
+   * Constructs an empty map with the given routing.
+   * @param shardCount  the number of shards
+   * @param router  maps a key to a shard index from 0 to shardCount - 1
+   * @param ordered  whether the router is order-preserving, i.e. never routes
+   *                 a greater key to a lower shard than a lesser key
+   */
+  public ShardedCountyMap(int shardCount, IntUnaryOperator router, boolean ordered) {
+    if (shardCount < 1) throw new IllegalArgumentException("Shard count must be positive");
+    shards = new ConcurrentAVLTreeMap[shardCount];
+    for (int i = 0; i < shardCount; i++)
+      shards[i] = new ConcurrentAVLTreeMap();
+    this.router = router;
+    this.ordered = ordered;
+  }
+
+  /**
+   * Constructs an empty map spreading keys over the given number of shards
+   * by hash, for key sets whose states are too unevenly populated.
+   * @param shardCount  the number of shards
+   * @return a new empty map
+   */
+  public static ShardedCountyMap hashed(int shardCount) {
+    return new ShardedCountyMap(shardCount, key -> Math.floorMod(mix(key), shardCount), false);
+  }
+
+  /**
+   * Scrambles the bits of a key (the finalization step of MurmurHash3), so
+   * that every bit of the result depends on every bit of the key. Without
+   * it, keys sharing their low bits, such as the all-odd FIPS county codes,
+   * would fall into only some of the shards whenever the count is even.
+   */
+  static int mix(int key) {
+    key ^= key >>> 16;
+    key *= 0x85EBCA6B;
+    key ^= key >>> 13;
+    key *= 0xC2B2AE35;
+    key ^= key >>> 16;
+    return key;
+  }
+
+  /** Returns the number of shards. */
+  public int getShardCount() { return shards.length; }
+
+  /**
+   * Returns the index of the shard holding the given key.
+   * @throws IllegalArgumentException if the key is null or routed outside the shards
+   */
+  public int shardOf(Integer key) throws IllegalArgumentException {
+    if (key == null) throw new IllegalArgumentException("Incompatible key");
+    int s = router.applyAsInt(key);
+    if (s < 0 || s >= shards.length)
+      throw new IllegalArgumentException("Key " + key + " routed to missing shard " + s);
+    return s;
+  }
+
+  @Override
+  public int size() {
+    int total = 0;
+    for (ConcurrentAVLTreeMap shard : shards)
+      total += shard.size();
+    return total;
+  }
+
+  @Override
+  public County get(Integer key) throws IllegalArgumentException {
+    return shards[shardOf(key)].get(key);
+  }
+
+  @Override
+  public County put(Integer key, County value) throws IllegalArgumentException {
+    return shards[shardOf(key)].put(key, value);
+  }
+
+  @Override
+  public County remove(Integer key) throws IllegalArgumentException {
+    return shards[shardOf(key)].remove(key);
+  }
+
+  //---------------- ordered queries ----------------
+
+  @Override
+  public Entry firstEntry() {
+    Entry best = null;
+    for (ConcurrentAVLTreeMap shard : shards) {
+      Entry e = shard.firstEntry();
+      if (e != null && ordered) return e;        // first nonempty shard
+      best = least(best, e);
+    }
+    return best;
+  }
+
+  @Override
+  public Entry lastEntry() {
+    Entry best = null;
+    for (int s = shards.length - 1; s >= 0; s--) {
+      Entry e = shards[s].lastEntry();
+      if (e != null && ordered) return e;        // last nonempty shard
+      best = greatest(best, e);
+    }
+    return best;
+  }
+
+  @Override
+  public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
+    if (!ordered) {
+      Entry best = null;
+      for (ConcurrentAVLTreeMap shard : shards)
+        best = least(best, shard.ceilingEntry(key));
+      return best;
+    }
+    int s = shardOf(key);
+    Entry e = shards[s].ceilingEntry(key);
+    while (e == null && ++s < shards.length)     // all later shards hold greater keys
+      e = shards[s].firstEntry();
+    return e;
+  }
+
+  @Override
+  public Entry floorEntry(Integer key) throws IllegalArgumentException {
+    if (!ordered) {
+      Entry best = null;
+      for (ConcurrentAVLTreeMap shard : shards)
+        best = greatest(best, shard.floorEntry(key));
+      return best;
+    }
+    int s = shardOf(key);
+    Entry e = shards[s].floorEntry(key);
+    while (e == null && --s >= 0)                // all earlier shards hold lesser keys
+      e = shards[s].lastEntry();
+    return e;
+  }
+
+  @Override
+  public Entry lowerEntry(Integer key) throws IllegalArgumentException {
+    if (!ordered) {
+      Entry best = null;
+      for (ConcurrentAVLTreeMap shard : shards)
+        best = greatest(best, shard.lowerEntry(key));
+      return best;
+    }
+    int s = shardOf(key);
+    Entry e = shards[s].lowerEntry(key);
+    while (e == null && --s >= 0)
+      e = shards[s].lastEntry();
+    return e;
+  }
+
+  @Override
+  public Entry higherEntry(Integer key) throws IllegalArgumentException {
+    if (!ordered) {
+      Entry best = null;
+      for (ConcurrentAVLTreeMap shard : shards)
+        best = least(best, shard.higherEntry(key));
+      return best;
+    }
+    int s = shardOf(key);
+    Entry e = shards[s].higherEntry(key);
+    while (e == null && ++s < shards.length)
+      e = shards[s].firstEntry();
+    return e;
+  }
+
+  /**
+   * Returns an iterable collection of all key-value entries of the map, in
+   * key order.
+   *
+   * @return iterable collection of the map's entries
+   */
+  @Override
+  public Iterable<Entry> entrySet() {
+    if (ordered) {                             // shards follow one another
+      ArrayList<Entry> result = new ArrayList<>(size());
+      for (ConcurrentAVLTreeMap shard : shards)
+        shard.entriesInto(result);
+      return result;
+    }
+    ArrayList<Iterable<Entry>> parts = new ArrayList<>(shards.length);
+    for (ConcurrentAVLTreeMap shard : shards)
+      parts.add(shard.entrySet());
+    return merge(parts);
+  }
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * @return iterable with keys in desired range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
+    if (!ordered) {
+      ArrayList<Iterable<Entry>> parts = new ArrayList<>(shards.length);
+      for (ConcurrentAVLTreeMap shard : shards)
+        parts.add(shard.subMap(fromKey, toKey));
+      return merge(parts);
+    }
+    int first = shardOf(fromKey), last = shardOf(toKey);
+    int expected = 0;                          // only shards first to last can hold the range
+    for (int s = first; s <= last; s++)
+      expected += shards[s].sizeOfRange(fromKey, toKey);
+    ArrayList<Entry> result = new ArrayList<>(expected);    // a hint if shards change meanwhile
+    for (int s = first; s <= last; s++)
+      shards[s].subMapInto(fromKey, toKey, result);
+    return result;
+  }
+
+  /** Returns the entry with the lesser key (either may be null). */
+  private static Entry least(Entry a, Entry b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    return (b.getKey() < a.getKey() ? b : a);
+  }
+
+  /** Returns the entry with the greater key (either may be null). */
+  private static Entry greatest(Entry a, Entry b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    return (b.getKey() > a.getKey() ? b : a);
+  }
+
+  /** Merges sorted parts whose key ranges may interleave. */
+  private static ArrayList<Entry> merge(ArrayList<Iterable<Entry>> parts) {
+    PriorityQueue<Cursor> heads = new PriorityQueue<>();
+    for (Iterable<Entry> part : parts) {
+      Iterator<Entry> it = part.iterator();
+      if (it.hasNext())
+        heads.add(new Cursor(it));
+    }
+    ArrayList<Entry> buffer = new ArrayList<>();
+    while (!heads.isEmpty()) {
+      Cursor c = heads.poll();
+      buffer.add(c.head);
+      if (c.advance())
+        heads.add(c);
+    }
+    return buffer;
+  }
+
+  //---------------- nested Cursor class ----------------
+  /** The next entry of one sorted part, ordered by key for merging. */
+  private static class Cursor implements Comparable<Cursor> {
+    private final Iterator<Entry> rest;
+    private Entry head;
+
+    Cursor(Iterator<Entry> rest) {
+      this.rest = rest;
+      head = rest.next();
+    }
+
+    /** Moves to the next entry, returning false if the part is exhausted. */
+    boolean advance() {
+      if (!rest.hasNext()) return false;
+      head = rest.next();
+      return true;
+    }
+
+    public int compareTo(Cursor other) {
+      return Integer.compare(head.getKey(), other.head.getKey());
+    }
+  } //----------- end of nested Cursor class -----------
+
+  //---------------- instrumentation ----------------
+
+  /**
+   * Enables or disables instrumentation of every shard.
+   * @param enabled  whether operations should be instrumented
+   */
+  public void setStatsEnabled(boolean enabled) {
+    for (ConcurrentAVLTreeMap shard : shards)
+      shard.setStatsEnabled(enabled);
+  }
+
+  /**
+   * Returns the statistics of all shards, summed.
+   * @return the collected statistics (or null if instrumentation is disabled)
+   */
+  public OperationStats getStats() {
+    OperationStats total = null;
+    for (ConcurrentAVLTreeMap shard : shards) {
+      OperationStats s = shard.getStats();
+      if (s != null) {
+        if (total == null) total = new OperationStats();
+        total.add(s);
+      }
+    }
+    return total;
+  }
+}
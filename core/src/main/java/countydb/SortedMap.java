@@ -21,6 +21,13 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * A map with additional support for keys from a total ordering.
  *
@@ -89,4 +96,37 @@ public interface SortedMap extends Map{
    * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
    */
   Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException;
+
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key. This default reverses a copy of subMap;
+   * implementations that can walk backwards override it.
+   * @return iterable with keys in desired range, greatest first
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  default Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    ArrayList<Entry> buffer = new ArrayList<>();
+    for (Entry e : subMap(fromKey, toKey))
+      buffer.add(e);
+    Collections.reverse(buffer);
+    return buffer;
+  }
+
+  /**
+   * Returns a sequential stream of the entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * increasing order of key (or decreasing, if <code>descending</code> is
+   * set). When the map's range iterables are lazy, a short-circuiting
+   * operation such as limit or findFirst ends the scan early.
+   * @return stream of the entries in the desired range
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  default Stream<Entry> subMapStream(Integer fromKey, Integer toKey, boolean descending)
+      throws IllegalArgumentException {
+    Iterable<Entry> range = (descending ? descendingSubMap(fromKey, toKey)
+                                        : subMap(fromKey, toKey));
+    return StreamSupport.stream(range.spliterator(), false);
+  }
 }
@@ -21,9 +21,13 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+package countydb;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.LinkedList;
 
@@ -57,6 +61,12 @@ public class TreeMap extends AbstractSortedMap {
     } //--------- end of nested BSTNode class ---------
 
     
+    /** The number of rotations performed on this tree. */
+    private int rotations = 0;
+
+    /** Returns the number of rotations performed on this tree. */
+    public int getRotationCount() { return rotations; }
+
     // positional-based methods related to aux field
     public int getAux(Position p) {
       return ((BSTNode) p).getAux();
@@ -74,10 +84,11 @@ public class TreeMap extends AbstractSortedMap {
       return new BSTNode(e, parent, left, right);
     }
 
-    /** Relinks a parent node with its oriented child node. */
+    /** Relinks a parent node with its oriented child node (which may be null). */
     private void relink(Node parent, Node child,
                         boolean makeLeftChild) {
-      child.setParent(parent);
+      if (child != null)
+        child.setParent(parent);
       if (makeLeftChild)
         parent.setLeft(child);
       else
@@ -97,6 +108,7 @@ public class TreeMap extends AbstractSortedMap {
      *  Caller should ensure that p is not the root.
      */
     public void rotate(Position p) {
+      rotations++;
       Node x = validate(p);
       Node y = x.getParent();        // we assume this exists
       Node z = y.getParent();        // grandparent (possibly null)
@@ -170,12 +182,17 @@ public class TreeMap extends AbstractSortedMap {
   } //----------- end of nested BalanceableBinaryTree class -----------
 
   /** Representation of the underlying tree structure. */
-  protected BalanceableBinaryTree tree = new BalanceableBinaryTree();
+  protected BalanceableBinaryTree tree = createTree();
+
+  /**
+   * Creates the (empty) underlying tree. Subclasses whose nodes carry more
+   * data override this; it is called before their own fields are initialized.
+   */
+  protected BalanceableBinaryTree createTree() { return new BalanceableBinaryTree(); }
 
   /** Constructs an empty map using the natural ordering of keys. */
   public TreeMap() {
     super();                  // the AbstractSortedMap constructor
-    tree.addRoot(null);       // create a sentinel leaf as root
   }
 
   /**
@@ -184,7 +201,6 @@ public class TreeMap extends AbstractSortedMap {
    */
   public TreeMap(Comparator comp) {
     super(comp);              // the AbstractSortedMap constructor
-    tree.addRoot(null);       // create a sentinel leaf as root
   }
 
   /**
@@ -193,14 +209,25 @@ public class TreeMap extends AbstractSortedMap {
    */
   @Override
   public int size() {
-    return (tree.size() - 1) / 2;        // only internal nodes have entries
+    return tree.size();                  // every node holds an entry
+  }
+
+  /**
+   * Utility used when inserting a new entry below the last node reached by
+   * a failed search (or as the root, if the tree is empty).
+   */
+  private Position addLeaf(Position p, Entry entry) {
+    if (p == null)
+      return tree.addRoot(entry);
+    else if (compare(entry, p.getElement()) < 0)
+      return tree.addLeft(p, entry);
+    else
+      return tree.addRight(p, entry);
   }
 
-  /** Utility used when inserting a new entry at a leaf of the tree */
-  private void expandExternal(Position p, Entry entry) {
-    tree.set(p, entry);            // store new entry at p
-    tree.addLeft(p, null);         // add new sentinel leaves as children
-    tree.addRight(p, null);
+  /** Returns whether a search for key ended at a node holding that key. */
+  private boolean isMatch(Position p, Integer key) {
+    return p != null && compare(key, p.getElement()) == 0;
   }
 
 
@@ -219,34 +246,36 @@ public class TreeMap extends AbstractSortedMap {
   protected Position restructure(Position x) { return tree.restructure(x); }
 
   /**
-   * Returns the position in p's subtree having the given key (or else the terminal leaf).
+   * Returns the node underlying a position of this tree. Positions handled
+   * internally always come from our own tree, so the validation performed by
+   * the public positional methods is skipped on the search and update paths.
+   */
+  protected static LinkedBinaryTree.Node node(Position p) {
+    return (LinkedBinaryTree.Node) p;
+  }
+
+  /**
+   * Returns the position in p's subtree having the given key (or else the
+   * last node reached, whose missing child is where the key belongs).
    * @param key  a target key
-   * @param p  a position of the tree serving as root of a subtree
-   * @return Position holding key, or last node reached during search
+   * @param p  a position of the tree serving as root of a subtree (null if empty)
+   * @return Position holding key, or last node reached during search (null if p is null)
    */
   private Position treeSearch(Position p, Integer key) {
-    if (isExternal(p))
-    {
-      //++time;
-      return p;                          // key not found; return the final leaf
-    }
-    
-    int comp = compare(key, p.getElement());
-    if (comp == 0)
-    {
-      ++time;
-      return p;                          // key found; return its position
-    }
-    else if (comp < 0)
-    {
-    	++time;
-      return treeSearch(left(p), key);   // search left subtree
-    }
-    else
-    {
-    	++time;
-      return treeSearch(right(p), key);  // search right subtree
+    LinkedBinaryTree.Node walk = node(p);
+    LinkedBinaryTree.Node last = null;
+    int comparisons = 0;
+    while (walk != null) {
+      last = walk;
+      int comp = compare(key, walk.getElement());
+      comparisons++;
+      if (comp == 0)
+        break;                           // key found
+      walk = (comp < 0 ? walk.getLeft() : walk.getRight());
     }
+    OperationStats s = localStats();
+    if (s != null) s.addComparisons(comparisons);
+    return last;                         // the match, or else the last node
   }
   
 
@@ -255,11 +284,9 @@ public class TreeMap extends AbstractSortedMap {
   {
 	  int indent = 32;
 	  
-	  if(root == null)
-		  return;
-	  
 	  LinkedQueue q = new LinkedQueue();
 	  
+	  //an empty tree has a null root, drawn as a single X leaf
 	  q.enqueue(root);
 	  
 	  while(true)
@@ -283,17 +310,17 @@ public class TreeMap extends AbstractSortedMap {
 				  for(int i =0; i < indent;i++)
 					  System.out.print(" ");
 			  
-			  if(p.getElement() != null)
-					  System.out.print(p.getElement().getKey() +" ");
-			  else
-				  System.out.print(" X ");
-			  
 			  q.dequeue();
 			  
-			  if(left(p) != null)
+			  //a missing child is queued as null and drawn as an X leaf
+			  if(p != null)
+			  {
+				  System.out.print(p.getElement().getKey() +" ");
 				  q.enqueue(left(p));
-			  if((right(p) != null))
 				  q.enqueue(right(p));
+			  }
+			  else
+				  System.out.print(" X ");
 				  
 			  nodeCount--;
 		  }
@@ -314,10 +341,10 @@ public class TreeMap extends AbstractSortedMap {
    * @return Position with minimal key in subtree
    */
   protected Position treeMin(Position p) {
-    Position walk = p;
-    while (isInternal(walk))
-      walk = left(walk);
-    return parent(walk);              // we want the parent of the leaf
+    LinkedBinaryTree.Node walk = node(p);
+    while (walk.getLeft() != null)
+      walk = walk.getLeft();
+    return walk;
   }
 
   /**
@@ -326,15 +353,86 @@ public class TreeMap extends AbstractSortedMap {
    * @return Position with maximum key in subtree
    */
   protected Position treeMax(Position p) {
-    Position walk = p;
-    while (isInternal(walk))
-      walk = right(walk);
-    return parent(walk);              // we want the parent of the leaf
+    LinkedBinaryTree.Node walk = node(p);
+    while (walk.getRight() != null)
+      walk = walk.getRight();
+    return walk;
   }
   
   
 
 
+  //---------------- instrumentation ----------------
+
+  /**
+   * Statistics of the calling thread (or null while instrumentation is
+   * disabled). Every thread records into its own instance, so that readers
+   * sharing the map never write to common counters.
+   */
+  private volatile ThreadLocal<OperationStats> stats = null;
+
+  /** The per-thread statistics created since instrumentation was enabled. */
+  private volatile List<OperationStats> threadStats = null;
+
+  /**
+   * Enables or disables instrumentation. While enabled, the latency of every
+   * get, put and remove is measured with System.nanoTime and recorded with the
+   * number of key comparisons and rotations it made. Enabling starts from
+   * empty statistics.
+   * @param enabled  whether operations should be instrumented
+   */
+  public void setStatsEnabled(boolean enabled) {
+    if (enabled) {
+      List<OperationStats> all = Collections.synchronizedList(new ArrayList<>());
+      threadStats = all;
+      stats = ThreadLocal.withInitial(() -> {
+        OperationStats s = new OperationStats();
+        all.add(s);                         // registered for getStats
+        return s;
+      });
+    } else {
+      stats = null;
+      threadStats = null;
+    }
+  }
+
+  /**
+   * Returns the statistics collected since instrumentation was enabled, summed
+   * over all threads. The result is a copy; while other threads are still
+   * operating on the map it is only approximate.
+   * @return the collected statistics (or null if instrumentation is disabled)
+   */
+  public OperationStats getStats() {
+    List<OperationStats> all = threadStats;
+    if (all == null) return null;
+    OperationStats total = new OperationStats();
+    synchronized (all) {
+      for (OperationStats s : all)
+        total.add(s);
+    }
+    return total;
+  }
+
+  /** Returns the statistics of the calling thread (or null if disabled). */
+  private OperationStats localStats() {
+    ThreadLocal<OperationStats> local = stats;
+    return (local == null ? null : local.get());
+  }
+
+  /** Returns the start time of an instrumented operation (0 if disabled). */
+  private long startTimer() {
+    return (stats == null ? 0L : System.nanoTime());
+  }
+
+  /** Records an operation that started at the given time, if instrumentation is enabled. */
+  private void stopTimer(OperationStats.Operation op, long start, int rotationsBefore) {
+    OperationStats s = localStats();
+    if (s != null) {
+      s.recordLatency(op, System.nanoTime() - start);
+      s.addRotations(tree.getRotationCount() - rotationsBefore);
+    }
+  }
+
   /**
    * Returns the value associated with the specified key, or null if no such entry exists.
    * @param key  the key whose associated value is to be returned
@@ -343,31 +441,18 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public County get(Integer key) throws IllegalArgumentException {
     checkKey(key);                          // may throw IllegalArgumentException
+    long start = startTimer();
+    int rotations = tree.getRotationCount();
     Position p = treeSearch(root(), key);
 
-    rebalanceAccess(p);                     // hook for balanced tree subclasses
-    if (isExternal(p)) return null;         // unsuccessful search
-    
-    return p.getElement().getValue();       // match found
+    if (p != null) rebalanceAccess(p);      // hook for balanced tree subclasses
+    County result = null;
+    if (isMatch(p, key))
+      result = p.getElement().getValue();   // match found
+    stopTimer(OperationStats.Operation.GET, start, rotations);
+    return result;
   }
 
-  int time = 0;
-  
-  public County getTime(Integer key) throws IllegalArgumentException {
-	    checkKey(key);                          // may throw IllegalArgumentException
-	    time = 0;
-	    Position p = treeSearch(root(), key);
-	    
-	    rebalanceAccess(p);                     // hook for balanced tree subclasses
-	    if (isExternal(p)) return null;         // unsuccessful search
-	    
-	    System.out.println("It took: " + time + " milliseconds" );
-	    time = 0;
-	    
-	    return p.getElement().getValue();       // match found
-	  }
-    
-  
   /**
    * Associates the given value with the given key. If an entry with
    * the key was already in the map, this replaced the previous value
@@ -380,45 +465,23 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public County put(Integer key, County value) throws IllegalArgumentException {
     checkKey(key);                          // may throw IllegalArgumentException
-    time = 0;
+    long start = startTimer();
+    int rotations = tree.getRotationCount();
     Entry newEntry = new MapEntry(key, value);
     Position p = treeSearch(root(), key);
     
-    
-    if (isExternal(p)) {                    // key is new
-      expandExternal(p, newEntry);
-      rebalanceInsert(p);                   // hook for balanced tree subclasses
-      return null;
+    County old = null;
+    if (!isMatch(p, key)) {                 // key is new
+      rebalanceInsert(addLeaf(p, newEntry)); // hook for balanced tree subclasses
     } else {                                // replacing existing key
-      County old = p.getElement().getValue();
+      old = p.getElement().getValue();
       set(p, newEntry);
       rebalanceAccess(p);                   // hook for balanced tree subclasses
-      return old;
     }
+    stopTimer(OperationStats.Operation.PUT, start, rotations);
+    return old;
   }
 
-  
-  public County putTime(int key, County value) throws IllegalArgumentException {
-	    checkKey(key);                          // may throw IllegalArgumentException
-	    time = 0;
-	    Entry newEntry = new MapEntry(key, value);
-	    Position p = treeSearch(root(), key);
-	    
-	    System.out.println("It took: " + time + " milliseconds");
-	    
-	    if (isExternal(p)) {                    // key is new
-	      expandExternal(p, newEntry);
-	      rebalanceInsert(p);                   // hook for balanced tree subclasses
-	      return null;
-	    } else {                                // replacing existing key
-	      County old = p.getElement().getValue();
-	      set(p, newEntry);
-	      rebalanceAccess(p);                   // hook for balanced tree subclasses
-	      return old;
-	    }
-	  }
-  
-  
   /**
    * Removes the entry with the specified key, if present, and returns
    * its associated value. Otherwise does nothing and returns null.
@@ -428,31 +491,26 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public County remove(Integer key) throws IllegalArgumentException {
     checkKey(key);                          // may throw IllegalArgumentException
-    
-    time = 0;
-    
+    long start = startTimer();
+    int rotations = tree.getRotationCount();
     Position p = treeSearch(root(), key);
-    System.out.println("It took: " + time + " miliseconds");
     
-    time =0;
-    
-    if (isExternal(p)) {                    // key not found
-      rebalanceAccess(p);                   // hook for balanced tree subclasses
-      return null;
+    County old = null;
+    if (!isMatch(p, key)) {                 // key not found
+      if (p != null) rebalanceAccess(p);    // hook for balanced tree subclasses
     } else {
-      County old = p.getElement().getValue();
-      if (isInternal(left(p)) && isInternal(right(p))) { // both children are internal
+      old = p.getElement().getValue();
+      if (left(p) != null && right(p) != null) { // both children are present
         Position replacement = treeMax(left(p));
         set(p, replacement.getElement());
         p = replacement;
-      } // now p has at most one child that is an internal node
-      Position leaf = (isExternal(left(p)) ? left(p) : right(p));
-      Position sib = sibling(leaf);
-      remove(leaf);
-      remove(p);                            // sib is promoted in p's place
-      rebalanceDelete(sib);                 // hook for balanced tree subclasses
-      return old;
+      } // now p has at most one child
+      Position parent = parent(p);
+      remove(p);                            // p's child (if any) is promoted in its place
+      rebalanceDelete(parent);              // hook for balanced tree subclasses
     }
+    stopTimer(OperationStats.Operation.REMOVE, start, rotations);
+    return old;
   }
 
   // additional behaviors of the SortedMap interface
@@ -485,15 +543,23 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public Entry ceilingEntry(Integer key) throws IllegalArgumentException {
     checkKey(key);                              // may throw IllegalArgumentException
-    Position p = treeSearch(root(), key);
-    if (isInternal(p)) return p.getElement();   // exact match
-    while (!isRoot(p)) {
-      if (p == left(parent(p)))
-        return parent(p).getElement();          // parent has next greater key
-      else
-        p = parent(p);
+    LinkedBinaryTree.Node best = ceilingNode(key);
+    return (best == null ? null : best.getElement());
+  }
+
+  /** Returns the node with least key greater than or equal to key (or null if none). */
+  private LinkedBinaryTree.Node ceilingNode(Integer key) {
+    LinkedBinaryTree.Node walk = node(root()), best = null;
+    while (walk != null) {
+      int comp = compare(key, walk.getElement());
+      if (comp == 0) return walk;               // exact match
+      if (comp < 0) {
+        best = walk;                            // walk has a greater key
+        walk = walk.getLeft();
+      } else
+        walk = walk.getRight();
     }
-    return null;                                // no such ceiling exists
+    return best;
   }
 
   /**
@@ -505,15 +571,17 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public Entry floorEntry(Integer key) throws IllegalArgumentException {
     checkKey(key);                              // may throw IllegalArgumentException
-    Position p = treeSearch(root(), key);
-    if (isInternal(p)) return p.getElement();   // exact match
-    while (!isRoot(p)) {
-      if (p == right(parent(p)))
-        return parent(p).getElement();          // parent has next lesser key
-      else
-        p = parent(p);
+    LinkedBinaryTree.Node walk = node(root()), best = null;
+    while (walk != null) {
+      int comp = compare(key, walk.getElement());
+      if (comp == 0) return walk.getElement();  // exact match
+      if (comp > 0) {
+        best = walk;                            // walk has a lesser key
+        walk = walk.getRight();
+      } else
+        walk = walk.getLeft();
     }
-    return null;                                // no such floor exists
+    return (best == null ? null : best.getElement());
   }
 
   /**
@@ -525,17 +593,21 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public Entry lowerEntry(Integer key) throws IllegalArgumentException {
     checkKey(key);                              // may throw IllegalArgumentException
-    Position p = treeSearch(root(), key);
-    if (isInternal(p) && isInternal(left(p)))
-      return treeMax(left(p)).getElement();     // this is the predecessor to p
-    // otherwise, we had failed search, or match with no left child
-    while (!isRoot(p)) {
-      if (p == right(parent(p)))
-        return parent(p).getElement();          // parent has next lesser key
-      else
-        p = parent(p);
+    LinkedBinaryTree.Node best = lowerNode(key);
+    return (best == null ? null : best.getElement());
+  }
+
+  /** Returns the node with greatest key strictly less than key (or null if none). */
+  private LinkedBinaryTree.Node lowerNode(Integer key) {
+    LinkedBinaryTree.Node walk = node(root()), best = null;
+    while (walk != null) {
+      if (compare(walk.getElement(), key) < 0) {
+        best = walk;                            // walk has a lesser key
+        walk = walk.getRight();
+      } else
+        walk = walk.getLeft();
     }
-    return null;                                // no such lesser key exists
+    return best;
   }
 
   /**
@@ -547,36 +619,105 @@ public class TreeMap extends AbstractSortedMap {
   @Override
   public Entry higherEntry(Integer key) throws IllegalArgumentException {
     checkKey(key);                               // may throw IllegalArgumentException
-    Position p = treeSearch(root(), key);
-    if (isInternal(p) && isInternal(right(p)))
-      return treeMin(right(p)).getElement();     // this is the successor to p
-    // otherwise, we had failed search, or match with no right child
-    while (!isRoot(p)) {
-      if (p == left(parent(p)))
-        return parent(p).getElement();           // parent has next lesser key
-      else
-        p = parent(p);
+    LinkedBinaryTree.Node walk = node(root()), best = null;
+    while (walk != null) {
+      if (compare(walk.getElement(), key) > 0) {
+        best = walk;                             // walk has a greater key
+        walk = walk.getLeft();
+      } else
+        walk = walk.getRight();
     }
-    return null;                                 // no such greater key exists
+    return (best == null ? null : best.getElement());
   }
 
   // Support for iteration
   /**
    * Returns an iterable collection of all key-value entries of the map.
+   * The entries are found as the iteration proceeds, so the map must not
+   * be modified while an iteration is in progress.
    *
    * @return iterable collection of the map's entries
    */
   @Override
   public Iterable<Entry> entrySet() {
-    ArrayList buffer = new ArrayList<>(size());
-    for (Position p : tree.inorder())
-      if (isInternal(p)) buffer.add(p.getElement());
-    return buffer;
+    return () -> new EntryIterator(isEmpty() ? null : treeMin(root()), null, false);
   }
 
+  /** Returns the node following n in key order (or null if n holds the greatest key). */
+  protected static LinkedBinaryTree.Node successor(LinkedBinaryTree.Node n) {
+    if (n.getRight() != null) {
+      n = n.getRight();
+      while (n.getLeft() != null)
+        n = n.getLeft();
+      return n;
+    }
+    while (n.getParent() != null && n == n.getParent().getRight())
+      n = n.getParent();
+    return n.getParent();
+  }
+
+  /** Returns the node preceding n in key order (or null if n holds the least key). */
+  protected static LinkedBinaryTree.Node predecessor(LinkedBinaryTree.Node n) {
+    if (n.getLeft() != null) {
+      n = n.getLeft();
+      while (n.getRight() != null)
+        n = n.getRight();
+      return n;
+    }
+    while (n.getParent() != null && n == n.getParent().getLeft())
+      n = n.getParent();
+    return n.getParent();
+  }
+
+  //---------------- nested EntryIterator class ----------------
+  /**
+   * Reports the entries in key order (or in reverse) starting from a given
+   * node, moving to each successor (or predecessor) through the parent
+   * links, so that it allocates nothing beyond itself. The iteration stops
+   * at the first key not below the bound (or, in reverse, below the bound).
+   * The map must not be modified while it is in use.
+   */
+  private class EntryIterator implements Iterator<Entry> {
+    private LinkedBinaryTree.Node next;
+    private final Integer bound;       // null for no bound
+    private final boolean descending;
+
+    EntryIterator(Position start, Integer bound, boolean descending) {
+      this.bound = bound;
+      this.descending = descending;
+      next = node(start);
+      trim();
+    }
+
+    /** Ends the iteration once the next node is beyond the bound. */
+    private void trim() {
+      if (next != null && bound != null) {
+        int comp = compare(next.getElement(), bound);
+        if (descending ? comp < 0 : comp >= 0)
+          next = null;
+      }
+    }
+
+    public boolean hasNext() { return next != null; }
+
+    public Entry next() {
+      if (next == null) throw new NoSuchElementException("no more entries");
+      LinkedBinaryTree.Node n = next;
+      next = (descending ? predecessor(n) : successor(n));
+      trim();
+      return n.getElement();
+    }
+
+    public void remove() { throw new UnsupportedOperationException("remove not supported"); }
+  } //----------- end of nested EntryIterator class -----------
+
   /**
    * Returns an iterable containing all entries with keys in the range from
    * <code>fromKey</code> inclusive to <code>toKey</code> exclusive.
+   * Each iteration starts at the ceiling entry of <code>fromKey</code> and
+   * walks successors until <code>toKey</code>, so a scan of k entries takes
+   * O(log n + k) time, and one abandoned early costs only what it visited.
+   * The map must not be modified while an iteration is in progress.
    * @return iterable with keys in desired range
    * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
    */
@@ -584,27 +725,24 @@ public class TreeMap extends AbstractSortedMap {
   public Iterable<Entry> subMap(Integer fromKey, Integer toKey) throws IllegalArgumentException {
     checkKey(fromKey);                                // may throw IllegalArgumentException
     checkKey(toKey);                                  // may throw IllegalArgumentException
-    ArrayList buffer = new ArrayList<>(size());
-    if (compare(fromKey, toKey) < 0)                  // ensure that fromKey < toKey
-      subMapRecurse(fromKey, toKey, root(), buffer);
-    return buffer;
+    return () -> new EntryIterator(ceilingNode(fromKey), toKey, false);
   }
 
-  
-  // utility to fill subMap buffer recursively (while maintaining order)
-  private void subMapRecurse(Integer fromKey, Integer toKey, Position p,
-                              ArrayList buffer) {
-    if (isInternal(p))
-      if (compare(p.getElement(), fromKey) < 0)
-        // p's key is less than fromKey, so any relevant entries are to the right
-        subMapRecurse(fromKey, toKey, right(p), buffer);
-      else {
-        subMapRecurse(fromKey, toKey, left(p), buffer); // first consider left subtree
-        if (compare(p.getElement(), toKey) < 0) {       // p is within range
-          buffer.add(p.getElement());                      // so add it to buffer, and consider
-          subMapRecurse(fromKey, toKey, right(p), buffer); // right subtree as well
-        }
-      }
+  /**
+   * Returns an iterable containing all entries with keys in the range from
+   * <code>fromKey</code> inclusive to <code>toKey</code> exclusive, in
+   * decreasing order of key. Each iteration starts at the lower entry of
+   * <code>toKey</code> and walks predecessors down to <code>fromKey</code>.
+   * The map must not be modified while an iteration is in progress.
+   * @return iterable with keys in desired range, greatest first
+   * @throws IllegalArgumentException if <code>fromKey</code> or <code>toKey</code> is not compatible with the map
+   */
+  @Override
+  public Iterable<Entry> descendingSubMap(Integer fromKey, Integer toKey)
+      throws IllegalArgumentException {
+    checkKey(fromKey);                                // may throw IllegalArgumentException
+    checkKey(toKey);                                  // may throw IllegalArgumentException
+    return () -> new EntryIterator(lowerNode(toKey), fromKey, true);
   }
 
   // Stubs for balanced search tree operations (subclasses can override)
@@ -620,7 +758,7 @@ public class TreeMap extends AbstractSortedMap {
    * Rebalances the tree after a child of specified position has been
    * removed.  This version of the method does not do anything, but it
    * can be overridden by subclasses.
-   * @param p the position of the sibling of the removed leaf
+   * @param p the parent of the removed node (or null if the root was removed)
    */
   protected void rebalanceDelete(Position p) { }
 
@@ -628,7 +766,7 @@ public class TreeMap extends AbstractSortedMap {
    * Rebalances the tree after an access of specified position.  This
    * version of the method does not do anything, but it can be
    * overridden by a subclasses.
-   * @param p the Position which was recently accessed (possibly a leaf)
+   * @param p the Position which was recently accessed (or the last node reached by a failed search)
    */
   protected void rebalanceAccess(Position p) { }
 
@@ -641,7 +779,7 @@ public class TreeMap extends AbstractSortedMap {
   /** This exists for debugging only */
   private void dumpRecurse(Position p, int depth) {
     String indent = (depth == 0 ? "" : String.format("%" + (2*depth) + "s", ""));
-    if (isExternal(p))
+    if (p == null)
       System.out.println(indent + "leaf");
     else {
       System.out.println(indent + p.getElement());
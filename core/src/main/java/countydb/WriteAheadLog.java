@@ -0,0 +1,340 @@
+package countydb;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the puts and removes applied to a map, so that the
+ * changes made since the map was loaded survive a restart.
+ *
+ * Each change is appended as a record holding its length, a CRC-32 checksum,
+ * the kind of change and its key (and, for a put, the encoded county). On
+ * opening, the log is scanned and anything after the last intact record,
+ * such as the half-written tail left by a crash, is cut off; replay then
+ * applies the intact records to a map in their original order.
+ *
+ * Records are collected in memory and written with group commit: whichever
+ * thread syncs next writes every record appended so far and forces them to
+ * disk with a single fsync. Under the EVERY_OP policy a change is durable
+ * when logPut or logRemove returns, but threads logging concurrently share
+ * the disk round trips. Under the BATCHED policy logging returns at once and
+ * a background thread syncs at a fixed interval, so a crash loses at most
+ * the changes of the last interval.
+ */
+public class WriteAheadLog implements Closeable {
+
+  /** When appended records are forced to disk. */
+  public enum SyncPolicy {
+    /** Before logPut or logRemove returns (shared by concurrent callers). */
+    EVERY_OP,
+    /** By a background thread, at a fixed interval. */
+    BATCHED
+  }
+
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+
+  /** Size of the record header: payload length and checksum. */
+  private static final int RECORD_HEADER = 4 + 4;
+
+  /** Amount of pending data above which a BATCHED log is synced by the appending thread. */
+  private static final int MAX_PENDING = 4 << 20;
+
+  /** Time close waits for a background flush in progress. */
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+  private final FileChannel channel;
+  private final SyncPolicy policy;
+  private final ScheduledExecutorService flusher;
+  private final CRC32 crc = new CRC32();
+
+  // guarded by this: records appended but not yet handed to a sync
+  private ByteBuffer pending = ByteBuffer.allocate(64 << 10);
+  private long appended = 0;         // sequence number of the last appended record
+  private boolean closed = false;
+
+  // guarded by syncLock: the buffer being written and the sync statistics
+  private final Object syncLock = new Object();
+  private ByteBuffer writing = ByteBuffer.allocate(64 << 10);
+  private volatile long durable = 0; // sequence number of the last record on disk
+  private volatile IOException failure = null;
+  private long syncs = 0;
+  private long bytes = 0;
+
+  /**
+   * Opens the log in the given file, creating it if necessary. A damaged
+   * tail is removed, and new records are appended after the intact ones.
+   * @param file  the file holding the log
+   * @param policy  when appended records are forced to disk
+   * @param intervalMillis  the interval between syncs of a BATCHED log (ignored otherwise)
+   * @throws IOException if the file cannot be opened
+   */
+  public WriteAheadLog(Path file, SyncPolicy policy, long intervalMillis) throws IOException {
+    if (policy == SyncPolicy.BATCHED && intervalMillis < 1)
+      throw new IllegalArgumentException("Sync interval must be positive");
+    this.policy = policy;
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                               StandardOpenOption.WRITE);
+    long end = scan(null);
+    if (end < channel.size())
+      channel.truncate(end);             // drop the damaged tail
+    channel.position(end);
+    if (policy == SyncPolicy.BATCHED) {
+      flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "wal-flusher");
+        t.setDaemon(true);
+        return t;
+      });
+      flusher.scheduleWithFixedDelay(this::backgroundSync, intervalMillis, intervalMillis,
+                                     TimeUnit.MILLISECONDS);
+    } else
+      flusher = null;
+  }
+
+  /**
+   * Applies every record of the log to the given map, in the order in which
+   * they were appended.
+   * @param map  the map receiving the logged changes
+   * @return the number of records applied
+   * @throws IOException if the log cannot be read
+   */
+  public long replay(Map map) throws IOException {
+    synchronized (syncLock) {
+      return scan(map);
+    }
+  }
+
+  /**
+   * Reads the intact records from the start of the file, applying them to
+   * the map if it is not null.
+   * @return the number of records applied, or the offset just after the last
+   *         intact record if map is null
+   */
+  private long scan(Map map) throws IOException {
+    long position = channel.position();
+    long offset = 0, count = 0;
+    channel.position(0);
+    InputStream stream = Channels.newInputStream(channel);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+    CRC32 check = new CRC32();
+    try {
+      while (true) {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 5 || length > channel.size() - offset - RECORD_HEADER)
+          break;                         // torn or damaged record
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        check.reset();
+        check.update(payload, 0, length);
+        if ((int) check.getValue() != checksum)
+          break;
+        if (map != null)
+          apply(ByteBuffer.wrap(payload), map);
+        offset += RECORD_HEADER + length;
+        count++;
+      }
+    } catch (EOFException e) {
+      // end of the intact records
+    } finally {
+      channel.position(position);
+    }
+    return (map == null ? offset : count);
+  }
+
+  /** Applies the change held by a record payload to a map. */
+  private static void apply(ByteBuffer payload, Map map) throws IOException {
+    byte op = payload.get();
+    int key = payload.getInt();
+    if (op == PUT)
+      map.put(key, CountyCodec.decode(payload));
+    else if (op == REMOVE)
+      map.remove(key);
+    else
+      throw new IOException("Unknown log record type " + op);
+  }
+
+  /**
+   * Logs the association of a county with its code.
+   * @param county  the county stored under its code
+   * @throws IllegalArgumentException if the name of the county is too long to encode
+   * @throws IOException if the log cannot be written (or has failed before)
+   */
+  public void logPut(County county) throws IOException {
+    int size = CountyCodec.encodedSize(county);    // rejects a bad county before anything is buffered
+    long seq;
+    synchronized (this) {
+      int start = reserve(1 + 4 + size);
+      pending.put(PUT).putInt(county.getCountyCode());
+      CountyCodec.encode(county, pending);
+      seq = seal(start);
+    }
+    commit(seq);
+  }
+
+  /**
+   * Logs the removal of the entry with the given code.
+   * @param key  the code whose entry is removed
+   * @throws IOException if the log cannot be written (or has failed before)
+   */
+  public void logRemove(int key) throws IOException {
+    long seq;
+    synchronized (this) {
+      int start = reserve(1 + 4);
+      pending.put(REMOVE).putInt(key);
+      seq = seal(start);
+    }
+    commit(seq);
+  }
+
+  /**
+   * Makes room for a record with a payload of at most the given size and
+   * skips its header, returning the offset of the record.
+   */
+  private int reserve(int maxPayload) throws IOException {
+    if (closed) throw new IOException("Log is closed");
+    if (failure != null) throw new IOException("Log failed", failure);
+    int needed = RECORD_HEADER + maxPayload;
+    if (pending.remaining() < needed) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * pending.capacity(),
+                                                       pending.position() + needed));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+    int start = pending.position();
+    pending.position(start + RECORD_HEADER);
+    return start;
+  }
+
+  /** Fills in the header of the record starting at the given offset. */
+  private long seal(int start) {
+    int length = pending.position() - start - RECORD_HEADER;
+    crc.reset();
+    crc.update(pending.array(), start + RECORD_HEADER, length);
+    pending.putInt(start, length);
+    pending.putInt(start + 4, (int) crc.getValue());
+    return ++appended;
+  }
+
+  /** Waits for the given record as the sync policy requires. */
+  private void commit(long seq) throws IOException {
+    if (policy == SyncPolicy.EVERY_OP)
+      sync(seq);
+    else if (pendingBytes() >= MAX_PENDING)
+      sync(seq);                         // do not let the buffer grow without bound
+  }
+
+  private synchronized int pendingBytes() { return pending.position(); }
+
+  /**
+   * Forces every record appended so far to disk.
+   * @throws IOException if the log cannot be written
+   */
+  public void flush() throws IOException {
+    long seq;
+    synchronized (this) {
+      seq = appended;
+    }
+    sync(seq);
+  }
+
+  /**
+   * Makes sure the record with the given sequence number is on disk. A thread
+   * finding its record already synced by another thread returns at once;
+   * otherwise it writes and forces all pending records in one step.
+   */
+  private void sync(long seq) throws IOException {
+    synchronized (syncLock) {
+      if (durable >= seq)
+        return;                          // committed by another thread's sync
+      if (failure != null) throw new IOException("Log failed", failure);
+      long last;
+      ByteBuffer batch;
+      synchronized (this) {              // swap buffers so appends can continue
+        batch = pending;
+        pending = writing;
+        last = appended;
+      }
+      writing = batch;
+      try {
+        batch.flip();
+        bytes += batch.remaining();
+        while (batch.hasRemaining())
+          channel.write(batch);
+        channel.force(false);
+      } catch (IOException e) {
+        failure = e;
+        throw e;
+      } finally {
+        batch.clear();
+      }
+      syncs++;
+      durable = last;
+    }
+  }
+
+  /** Periodic sync of a BATCHED log; failures are reported to later callers. */
+  private void backgroundSync() {
+    try {
+      flush();
+    } catch (IOException e) {
+      // recorded in failure by sync
+    }
+  }
+
+  /** Returns the number of records appended since the log was opened. */
+  public synchronized long getRecordCount() { return appended; }
+
+  /** Returns the number of fsyncs performed since the log was opened. */
+  public long getSyncCount() {
+    synchronized (syncLock) {
+      return syncs;
+    }
+  }
+
+  /** Returns the number of bytes written since the log was opened. */
+  public long getBytesWritten() {
+    synchronized (syncLock) {
+      return bytes;
+    }
+  }
+
+  /**
+   * Forces all appended records to disk and closes the log.
+   * @throws IOException if the log cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) return;
+      closed = true;
+    }
+    if (flusher != null) {
+      flusher.shutdown();
+      try {                              // let a background flush finish before the channel closes
+        flusher.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.assertEntries;
+import static countydb.CountyAssert.assertEntry;
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests of the tree structure of AVLTreeMap (balance, heights and subtree
+ * sizes), bottom-up loading, the order-statistic queries and getAll.
+ */
+public class AVLTreeMapTest {
+
+  /**
+   * Checks the subtree rooted at n: keys in order, parent links, stored
+   * heights and sizes, and the AVL balance condition.
+   * @return the height of the subtree
+   */
+  private static int checkSubtree(AVLTreeMap map, LinkedBinaryTree.Node n,
+                                  LinkedBinaryTree.Node parent, long lo, long hi) {
+    if (n == null) return 0;
+    int key = n.getElement().getKey();
+    assertTrue("key " + key + " out of order", lo < key && key < hi);
+    assertSame("parent of " + key, parent, n.getParent());
+    int left = checkSubtree(map, n.getLeft(), n, lo, key);
+    int right = checkSubtree(map, n.getRight(), n, key, hi);
+    assertTrue("unbalanced at " + key, Math.abs(left - right) <= 1);
+    int height = 1 + Math.max(left, right);
+    assertEquals("height of " + key, height, map.height(n));
+    assertEquals("size of " + key,
+                 1 + AVLTreeMap.sizeOf(n.getLeft()) + AVLTreeMap.sizeOf(n.getRight()),
+                 AVLTreeMap.sizeOf(n));
+    return height;
+  }
+
+  /** Asserts that the tree of map is a valid AVL tree holding size() entries. */
+  static void assertValidTree(AVLTreeMap map) {
+    LinkedBinaryTree.Node root = AVLTreeMap.node(map.root());
+    checkSubtree(map, root, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals("root size", map.size(), AVLTreeMap.sizeOf(root));
+  }
+
+  @Test
+  public void staysBalancedUnderRandomUpdates() {
+    Random random = new Random(21);
+    AVLTreeMap map = new AVLTreeMap();
+    for (int i = 0; i < 20000; i++) {
+      int code = randomCode(random);
+      if (random.nextInt(3) == 0)
+        map.remove(code);
+      else
+        map.put(code, county(code, i));
+      if (i % 1000 == 0)
+        assertValidTree(map);
+    }
+    assertValidTree(map);
+  }
+
+  @Test
+  public void staysBalancedUnderSortedInserts() {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int code = 0; code < 4096; code++)
+      map.put(code, county(code, code));
+    assertValidTree(map);
+    assertTrue("height " + map.height(map.root()), map.height(map.root()) <= 13);
+  }
+
+  @Test
+  public void bulkLoadMatchesPuts() {
+    Random random = new Random(22);
+    County[] counties = new County[5000];
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < counties.length; i++) {
+      counties[i] = county(randomCode(random), i);     // unsorted, with repeated codes
+      ref.put(counties[i].getCountyCode(), counties[i]);
+    }
+    County[] copy = counties.clone();
+    AVLTreeMap map = AVLTreeMap.bulkLoad(counties);
+    assertTrue("input array is not modified", java.util.Arrays.equals(copy, counties));
+    assertEntries("bulkLoad", ref, map.entrySet());
+    assertValidTree(map);
+
+    map.put(1, county(1, 1));                          // the loaded tree accepts updates
+    map.remove(ref.lastKey());
+    assertValidTree(map);
+  }
+
+  @Test
+  public void bulkLoadOfNothingIsEmpty() {
+    AVLTreeMap map = AVLTreeMap.bulkLoad(new County[0]);
+    assertTrue(map.isEmpty());
+    assertNull(map.firstEntry());
+  }
+
+  @Test
+  public void rankSelectAndPageMatchSortedKeys() {
+    Random random = new Random(23);
+    AVLTreeMap map = new AVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 5000; i++) {
+      int code = randomCode(random);
+      if (random.nextInt(4) == 0) {
+        map.remove(code);
+        ref.remove(code);
+      } else {
+        County c = county(code, i);
+        map.put(code, c);
+        ref.put(code, c);
+      }
+    }
+    List<Integer> keys = new ArrayList<>(ref.keySet());
+    for (int i = 0; i < 500; i++) {
+      int code = randomCode(random);
+      assertEquals("rank " + code, ref.headMap(code).size(), map.rank(code));
+    }
+    for (int k = -2; k <= keys.size() + 1; k++) {
+      Entry e = map.select(k);
+      if (k < 0 || k >= keys.size())
+        assertNull("select " + k, e);
+      else
+        assertEquals("select " + k, keys.get(k), e.getKey());
+    }
+    for (int i = 0; i < 200; i++) {
+      int offset = random.nextInt(keys.size() + 10);
+      int limit = random.nextInt(40);
+      java.util.TreeMap<Integer, County> page = new java.util.TreeMap<>();
+      for (int k = offset; k < Math.min(keys.size(), offset + limit); k++)
+        page.put(keys.get(k), ref.get(keys.get(k)));
+      assertEntries("page " + offset + "," + limit, page, map.page(offset, limit));
+    }
+  }
+
+  @Test
+  public void percentileUsesNearestRank() {
+    County[] counties = new County[200];
+    for (int i = 0; i < counties.length; i++)
+      counties[i] = county(10 * (i + 1), i);
+    AVLTreeMap map = AVLTreeMap.bulkLoad(counties);
+    assertEquals(Integer.valueOf(10), map.percentile(0).getKey());
+    assertEquals(Integer.valueOf(1000), map.percentile(50).getKey());
+    assertEquals(Integer.valueOf(1010), map.percentile(50.1).getKey());
+    assertEquals(Integer.valueOf(2000), map.percentile(100).getKey());
+    assertNull(new AVLTreeMap().percentile(50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void percentileRejectsOutOfRange() {
+    new AVLTreeMap().percentile(100.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void pageRejectsNegativeOffset() {
+    new AVLTreeMap().page(-1, 10);
+  }
+
+  @Test
+  public void replacingValuesKeepsSizes() {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int code = 0; code < 1000; code++)
+      map.put(code, county(code, 0));
+    for (int code = 0; code < 1000; code += 3)
+      map.put(code, county(code, 1));
+    assertValidTree(map);
+    assertEquals(500, map.rank(500));
+  }
+
+  @Test
+  public void getAllResolvesEveryProbe() {
+    Random random = new Random(24);
+    AVLTreeMap map = new AVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 5000; i++) {
+      County c = county(randomCode(random), i);
+      map.put(c.getCountyCode(), c);
+      ref.put(c.getCountyCode(), c);
+    }
+    for (int round = 0; round < 50; round++) {
+      int[] codes = new int[random.nextInt(500)];
+      for (int i = 0; i < codes.length; i++)
+        codes[i] = (i % 7 == 0 ? Integer.MIN_VALUE + i : randomCode(random));  // misses and repeats
+      County[] results = new County[codes.length + 1];
+      java.util.Arrays.fill(results, county(-1, -1));    // stale values must be overwritten
+      int found = 0;
+      for (int code : codes)
+        if (ref.containsKey(code)) found++;
+      assertEquals("found", found, map.getAll(codes, results));
+      for (int i = 0; i < codes.length; i++)
+        assertSame("getAll " + codes[i], ref.get(codes[i]), results[i]);
+    }
+  }
+
+  @Test
+  public void getAllWithCustomOrder() {
+    AVLTreeMap map = new AVLTreeMap(Comparator.reverseOrder());
+    for (int code = 0; code < 100; code++)
+      map.put(code, county(code, code));
+    County[] results = new County[3];
+    assertEquals(2, map.getAll(new int[] {5, 500, 99}, results));
+    assertCounty("reverse order", county(5, 5), results[0]);
+    assertNull(results[1]);
+    assertCounty("reverse order", county(99, 99), results[2]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getAllRejectsShortResultArray() {
+    new AVLTreeMap().getAll(new int[2], new County[1]);
+  }
+
+  @Test
+  public void entriesAreVisitedInOrderAfterRemovals() {
+    AVLTreeMap map = new AVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int code = 0; code < 300; code++) {
+      map.put(code, county(code, code));
+      ref.put(code, county(code, code));
+    }
+    for (int code = 0; code < 300; code += 2) {
+      map.remove(code);
+      ref.remove(code);
+    }
+    assertEntries("after removals", ref, map.entrySet());
+    assertEntry("ceiling", ref.ceilingEntry(100), map.ceilingEntry(100));
+    assertValidTree(map);
+  }
+}
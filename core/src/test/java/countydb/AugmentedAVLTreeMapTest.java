@@ -0,0 +1,88 @@
+package countydb;
+
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Compares the range aggregates of AugmentedAVLTreeMap with sums, minima
+ * and maxima computed over a java.util.TreeMap.
+ */
+public class AugmentedAVLTreeMapTest {
+
+  /** Compares every aggregate of map for random ranges with brute force over ref. */
+  private static void checkRanges(AugmentedAVLTreeMap map, java.util.TreeMap<Integer, County> ref,
+                                  Random random) {
+    for (int i = 0; i < 100; i++) {
+      int from = randomCode(random);
+      int to = from + random.nextInt(30000) - 1000;
+      int count = 0;
+      long sum = 0;
+      Integer min = null, max = null;
+      if (from < to)
+        for (County c : ref.subMap(from, to).values()) {
+          count++;
+          if (c == null) continue;
+          sum += c.getPopulation();
+          min = (min == null ? c.getPopulation() : Math.min(min, c.getPopulation()));
+          max = (max == null ? c.getPopulation() : Math.max(max, c.getPopulation()));
+        }
+      String range = from + ".." + to;
+      assertEquals("countInRange " + range, count, map.countInRange(from, to));
+      assertEquals("populationSum " + range, sum, map.populationSum(from, to));
+      assertEquals("populationMin " + range, min, map.populationMin(from, to));
+      assertEquals("populationMax " + range, max, map.populationMax(from, to));
+    }
+  }
+
+  @Test
+  public void aggregatesMatchBruteForce() {
+    Random random = new Random(31);
+    AugmentedAVLTreeMap map = new AugmentedAVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 20000; i++) {
+      int code = randomCode(random);
+      int choice = random.nextInt(10);
+      if (choice < 3) {
+        map.remove(code);
+        ref.remove(code);
+      } else {
+        County c = (choice == 3 ? null : new County(code, random.nextInt(1000000), "c"));
+        map.put(code, c);                              // null values count but add no population
+        ref.put(code, c);
+      }
+      if (i % 2000 == 0)
+        checkRanges(map, ref, random);
+    }
+    checkRanges(map, ref, random);
+    AVLTreeMapTest.assertValidTree(map);
+  }
+
+  @Test
+  public void bulkLoadComputesAggregates() {
+    Random random = new Random(32);
+    County[] counties = new County[3000];
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < counties.length; i++) {
+      counties[i] = county(randomCode(random), random.nextInt(100000));
+      ref.put(counties[i].getCountyCode(), counties[i]);
+    }
+    AugmentedAVLTreeMap map = AugmentedAVLTreeMap.bulkLoad(counties);
+    checkRanges(map, ref, random);
+    AVLTreeMapTest.assertValidTree(map);
+  }
+
+  @Test
+  public void emptyRangesHaveNoExtremes() {
+    AugmentedAVLTreeMap map = new AugmentedAVLTreeMap();
+    map.put(6001, county(6001, 5));
+    assertEquals(0, map.countInRange(7000, 8000));
+    assertEquals(0, map.populationSum(6001, 6001));
+    assertNull(map.populationMin(7000, 8000));
+    assertNull(map.populationMax(6002, 6001));
+  }
+}
@@ -0,0 +1,66 @@
+package countydb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+/**
+ * Assertions and data shared by the tests. Counties are compared field by
+ * field, since some maps (such as OffHeapAVLTreeMap) return copies of the
+ * records they were given.
+ */
+final class CountyAssert {
+
+  private CountyAssert() { }
+
+  /** Returns a random code of the form state * 1000 + county, like a five-digit FIPS code. */
+  static int randomCode(Random random) {
+    return (1 + random.nextInt(56)) * 1000 + random.nextInt(200);
+  }
+
+  /** Returns a county with the given code and a population and name derived from seq. */
+  static County county(int code, int seq) {
+    return new County(code, seq, "County " + code + "/" + seq);
+  }
+
+  /** Asserts that two counties are both null or hold the same fields. */
+  static void assertCounty(String message, County expected, County actual) {
+    if (expected == null) {
+      assertNull(message, actual);
+      return;
+    }
+    assertNotNull(message + ": missing county " + expected, actual);
+    assertEquals(message + ": code", expected.getCountyCode(), actual.getCountyCode());
+    assertEquals(message + ": population", expected.getPopulation(), actual.getPopulation());
+    assertEquals(message + ": name", expected.getCountyName(), actual.getCountyName());
+  }
+
+  /** Asserts that an entry matches an entry of a java.util map (both may be null). */
+  static void assertEntry(String message, java.util.Map.Entry<Integer, County> expected,
+                          Entry actual) {
+    if (expected == null) {
+      assertNull(message, actual);
+      return;
+    }
+    assertNotNull(message + ": missing entry " + expected.getKey(), actual);
+    assertEquals(message + ": key", expected.getKey(), actual.getKey());
+    assertCounty(message, expected.getValue(), actual.getValue());
+  }
+
+  /** Asserts that the entries produced by an iterable match those of a java.util map view. */
+  static void assertEntries(String message, java.util.Map<Integer, County> expected,
+                            Iterable<Entry> actual) {
+    java.util.Iterator<java.util.Map.Entry<Integer, County>> walk = expected.entrySet().iterator();
+    int i = 0;
+    for (Entry e : actual) {
+      if (!walk.hasNext())
+        throw new AssertionError(message + ": unexpected entry " + e.getKey() + " at " + i);
+      assertEntry(message + " at " + i, walk.next(), e);
+      i++;
+    }
+    if (walk.hasNext())
+      throw new AssertionError(message + ": missing entry " + walk.next().getKey() + " at " + i);
+  }
+}
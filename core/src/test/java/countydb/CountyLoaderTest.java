@@ -0,0 +1,114 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.assertEntries;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Parsing of county files by CountyLoader and ParallelCountyLoader. */
+public class CountyLoaderTest {
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("countydb", ".txt");
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private List<County> load(String text, int bufferSize) throws IOException {
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    List<County> counties = new ArrayList<>();
+    new CountyLoader(bufferSize).load(file, counties::add);
+    return counties;
+  }
+
+  @Test
+  public void parsesRecordsInFileOrder() throws IOException {
+    List<County> counties = load("06071,1920,\"San Bernardino, CA\"\r\n"
+                                 + "\n"
+                                 + "  06059 , 6214 , \"Orange, CA\"  \n"
+                                 + "72001,17,\"Adjuntas, PR ñ\"", 1 << 10);
+    assertEquals(3, counties.size());
+    assertCounty("first", new County(6071, 1920, "San Bernardino, CA"), counties.get(0));
+    assertCounty("second", new County(6059, 6214, "Orange, CA"), counties.get(1));
+    assertCounty("last line without newline", new County(72001, 17, "Adjuntas, PR ñ"),
+                 counties.get(2));
+  }
+
+  @Test
+  public void recordsSpanningBufferRefills() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      text.append(i).append(',').append(3 * i).append(",\"County ").append(i).append("\"\n");
+    List<County> counties = load(text.toString(), 64);
+    assertEquals(1000, counties.size());
+    for (int i = 0; i < 1000; i++)
+      assertCounty("record " + i, new County(i, 3 * i, "County " + i), counties.get(i));
+  }
+
+  @Test
+  public void acceptsSignedNumbers() throws IOException {
+    List<County> counties = load("-5,+12,\"Negative\"\n"
+                                 + "2147483647,-2147483648,\"Limits\"\n", 1 << 10);
+    assertCounty("signed", new County(-5, 12, "Negative"), counties.get(0));
+    assertCounty("limits", new County(Integer.MAX_VALUE, Integer.MIN_VALUE, "Limits"),
+                 counties.get(1));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsCodeOverflow() throws IOException {
+    load("2147483648,1,\"Too big\"\n", 1 << 10);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsLongPopulation() throws IOException {
+    load("6001,123456789012,\"Wrapped\"\n", 1 << 10);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsBareSign() throws IOException {
+    load("-,1,\"No digits\"\n", 1 << 10);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMissingQuote() throws IOException {
+    load("06071,1920,San Bernardino\n", 1 << 10);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMissingPopulation() throws IOException {
+    load("06071,,\"San Bernardino, CA\"\n", 1 << 10);
+  }
+
+  @Test
+  public void parallelLoaderMatchesSequentialLoader() throws IOException {
+    Random random = new Random(81);
+    StringBuilder text = new StringBuilder();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 200000; i++) {
+      int code = random.nextInt(1000000);
+      text.append(code).append(',').append(i).append(",\"Tract ").append(code).append("\"\n");
+      ref.put(code, new County(code, i, "Tract " + code));   // the last record of a code wins
+    }
+    Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+    ParallelCountyLoader loader = new ParallelCountyLoader();
+    AVLTreeMap map = loader.load(file);
+    assertEquals(200000, loader.getRecordCount());
+    assertEntries("parallel load", ref, map.entrySet());
+  }
+}
@@ -0,0 +1,118 @@
+package countydb;
+
+import static countydb.CountyAssert.assertEntries;
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Round trips through CountySnapshot, and its detection of damaged files. */
+public class CountySnapshotTest {
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("countydb", ".snap");
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private static java.util.TreeMap<Integer, County> fill(SortedMap map, int count, long seed) {
+    Random random = new Random(seed);
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      int code = randomCode(random) + 100000 * random.nextInt(20);
+      County c = (i % 100 == 0 ? new County(code, i, null)
+                               : new County(code, i, "Coñty é " + code));  // multi-byte names
+      map.put(code, c);
+      ref.put(code, c);
+    }
+    return ref;
+  }
+
+  @Test
+  public void restoresWhatWasWritten() throws IOException {
+    AVLTreeMap map = new AVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = fill(map, 50000, 61);   // several read buffers
+    CountySnapshot snapshot = new CountySnapshot();
+    assertEquals(ref.size(), snapshot.write(map, file));
+    AVLTreeMap restored = snapshot.read(file);
+    assertEquals(ref.size(), snapshot.getRecordCount());
+    assertTrue(snapshot.getRecordsPerSecond() > 0);
+    assertEntries("restored", ref, restored.entrySet());
+    AVLTreeMapTest.assertValidTree(restored);
+  }
+
+  @Test
+  public void restoresEmptyMap() throws IOException {
+    CountySnapshot snapshot = new CountySnapshot();
+    snapshot.write(new AVLTreeMap(), file);
+    assertTrue(snapshot.read(file).isEmpty());
+  }
+
+  @Test
+  public void detectsDamagedRecords() throws IOException {
+    AVLTreeMap map = new AVLTreeMap();
+    fill(map, 100, 62);
+    new CountySnapshot().write(map, file);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length / 2] ^= 0x01;
+    Files.write(file, bytes);
+    try {
+      new CountySnapshot().read(file);
+      fail("damaged snapshot was read");
+    } catch (IOException expected) {
+      // checksum mismatch
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsTruncatedSnapshot() throws IOException {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int i = 0; i < 100; i++)
+      map.put(i, county(i, i));
+    new CountySnapshot().write(map, file);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 20));
+    new CountySnapshot().read(file);
+  }
+
+  @Test
+  public void rejectsRecordCountBeyondFileSize() throws IOException {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int i = 0; i < 10; i++)
+      map.put(i, new County(i, i, null));          // the smallest records fit exactly
+    new CountySnapshot().write(map, file);
+    assertEquals(10, new CountySnapshot().read(file).size());
+    byte[] bytes = Files.readAllBytes(file);
+    for (int count : new int[] {11, Integer.MAX_VALUE}) {
+      java.nio.ByteBuffer.wrap(bytes).putInt(8, count);
+      Files.write(file, bytes);
+      try {
+        new CountySnapshot().read(file);
+        fail("count of " + count + " records was accepted");
+      } catch (IOException expected) {
+        assertEquals("Damaged snapshot header", expected.getMessage());
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Files.write(file, "06071,1920,\"San Bernardino, CA\"\n".getBytes("UTF-8"));
+    new CountySnapshot().read(file);
+  }
+}
@@ -0,0 +1,137 @@
+package countydb;
+
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks that the name and population indexes of IndexedAVLTreeMap follow
+ * every update, comparing their lookups with scans of a reference map.
+ */
+public class IndexedAVLTreeMapTest {
+
+  private static final String[] NAMES = {
+    "Orange, CA", "orange, ca", "San Diego, CA", "San Francisco, CA", "Santa Barbara, CA",
+    "Napa, CA", "Sonoma, CA", "Fresno, CA", null
+  };
+
+  private static List<Integer> codes(Iterable<County> counties) {
+    List<Integer> codes = new ArrayList<>();
+    for (County c : counties)
+      codes.add(c.getCountyCode());
+    return codes;
+  }
+
+  /** Returns the codes of the counties of ref accepted by the filter, in code order. */
+  private static List<Integer> scan(java.util.TreeMap<Integer, County> ref,
+                                    java.util.function.Predicate<County> filter) {
+    List<Integer> codes = new ArrayList<>();
+    for (County c : ref.values())
+      if (c != null && filter.test(c))
+        codes.add(c.getCountyCode());
+    return codes;
+  }
+
+  private static void checkNames(IndexedAVLTreeMap map, java.util.TreeMap<Integer, County> ref) {
+    for (String q : new String[] {"Orange, CA", "ORANGE, CA", "San", "sAn f", "", "Napa, CA3", "zzz"}) {
+      assertEquals("findByName " + q,
+                   scan(ref, c -> q.equals(c.getCountyName())), codes(map.findByName(q)));
+      assertEquals("findByNameIgnoreCase " + q,
+                   scan(ref, c -> q.equalsIgnoreCase(c.getCountyName())),
+                   codes(map.findByNameIgnoreCase(q)));
+      List<Integer> prefixed = codes(map.findByNamePrefix(q, Integer.MAX_VALUE));
+      List<Integer> sorted = new ArrayList<>(prefixed);
+      sorted.sort(null);
+      assertEquals("findByNamePrefix " + q,
+                   scan(ref, c -> c.getCountyName() != null
+                                  && c.getCountyName().regionMatches(true, 0, q, 0, q.length())),
+                   sorted);
+      assertEquals("prefix limit " + q, Math.min(3, prefixed.size()),
+                   codes(map.findByNamePrefix(q, 3)).size());
+      for (int i = 1; i < prefixed.size(); i++) {      // in order of name
+        String a = map.get(prefixed.get(i - 1)).getCountyName();
+        String b = map.get(prefixed.get(i)).getCountyName();
+        assertTrue("name order", String.CASE_INSENSITIVE_ORDER.compare(a, b) <= 0);
+      }
+    }
+  }
+
+  private static void checkPopulations(IndexedAVLTreeMap map, java.util.TreeMap<Integer, County> ref,
+                                       Random random) {
+    List<County> byPopulation = new ArrayList<>();
+    for (County c : ref.values())
+      if (c != null) byPopulation.add(c);
+    byPopulation.sort((a, b) -> a.getPopulation() != b.getPopulation()
+                                ? Integer.compare(a.getPopulation(), b.getPopulation())
+                                : Integer.compare(a.getCountyCode(), b.getCountyCode()));
+    int k = random.nextInt(byPopulation.size() + 3);
+    List<Integer> bottom = new ArrayList<>(), top = new ArrayList<>();
+    for (int i = 0; i < Math.min(k, byPopulation.size()); i++) {
+      bottom.add(byPopulation.get(i).getCountyCode());
+      top.add(byPopulation.get(byPopulation.size() - 1 - i).getCountyCode());
+    }
+    assertEquals("bottomK " + k, bottom, codes(map.bottomK(k)));
+    assertEquals("topK " + k, top, codes(map.topK(k)));
+    int lo = random.nextInt(60) - 15, hi = random.nextInt(60) - 15;
+    List<Integer> between = new ArrayList<>();
+    for (County c : byPopulation)
+      if (c.getPopulation() >= lo && c.getPopulation() <= hi)
+        between.add(c.getCountyCode());
+    assertEquals("populationBetween " + lo + ".." + hi, between,
+                 codes(map.populationBetween(lo, hi)));
+  }
+
+  @Test
+  public void indexesFollowUpdates() {
+    Random random = new Random(41);
+    IndexedAVLTreeMap map = new IndexedAVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 20000; i++) {
+      int code = randomCode(random);
+      if (random.nextInt(3) == 0) {
+        map.remove(code);
+        ref.remove(code);
+      } else {
+        String name = NAMES[random.nextInt(NAMES.length)];
+        if (name != null && random.nextBoolean())
+          name = name + code % 7;
+        County c = new County(code, random.nextInt(50) - 10, name);
+        map.put(code, c);
+        ref.put(code, c);
+      }
+      if (i % 1000 == 0) {
+        checkNames(map, ref);
+        checkPopulations(map, ref, random);
+      }
+    }
+    checkNames(map, ref);
+    checkPopulations(map, ref, random);
+    assertEquals(ref.size(), map.getPopulationIndex().size());
+  }
+
+  @Test
+  public void bulkLoadIndexesEveryRecord() {
+    Random random = new Random(42);
+    County[] counties = new County[2000];
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < counties.length; i++) {
+      int code = randomCode(random);
+      counties[i] = new County(code, random.nextInt(40), NAMES[i % (NAMES.length - 1)]);
+      ref.put(code, counties[i]);
+    }
+    IndexedAVLTreeMap map = IndexedAVLTreeMap.bulkLoad(counties);
+    checkNames(map, ref);
+    checkPopulations(map, ref, random);
+    assertEquals(ref.size(), map.getNameIndex().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void topKRejectsNegativeCount() {
+    new IndexedAVLTreeMap().topK(-1);
+  }
+}
@@ -0,0 +1,73 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes maps to index files and checks that the mapped index answers
+ * every query as a java.util.TreeMap holding the same records would.
+ */
+public class MappedCountyIndexTest {
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("countydb", ".idx");
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void answersLikeTheWrittenMap() throws IOException {
+    Random random = new Random(71);
+    AVLTreeMap map = new AVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int i = 0; i < 5000; i++) {
+      County c = (i % 97 == 0 ? new County(randomCode(random), i, null)
+                              : county(randomCode(random), i));
+      map.put(c.getCountyCode(), c);
+      ref.put(c.getCountyCode(), c);
+    }
+    assertEquals(ref.size(), MappedCountyIndex.write(map, file));
+    MappedCountyIndex index = new MappedCountyIndex(file);
+    for (int code = 0; code < 60000; code += 37)
+      assertCounty("get " + code, ref.get(code), index.get(code));
+    SortedMapDifferentialTest.checkQueries("MappedCountyIndex", index, ref, random);
+  }
+
+  @Test
+  public void emptyIndex() throws IOException {
+    MappedCountyIndex.write(new AVLTreeMap(), file);
+    MappedCountyIndex index = new MappedCountyIndex(file);
+    assertTrue(index.isEmpty());
+    assertEquals(null, index.firstEntry());
+    assertEquals(null, index.ceilingEntry(0));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void isReadOnly() throws IOException {
+    MappedCountyIndex.write(new AVLTreeMap(), file);
+    new MappedCountyIndex(file).put(6001, county(6001, 1));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Files.write(file, new byte[64]);
+    new MappedCountyIndex(file);
+  }
+}
@@ -0,0 +1,146 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.assertEntries;
+import static countydb.CountyAssert.county;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/** Storage of records in OffHeapCountyStore and OffHeapAVLTreeMap. */
+public class OffHeapAVLTreeMapTest {
+
+  /**
+   * Checks the subtree of the array tree rooted at slot p: keys in order,
+   * parent links, stored heights and the AVL balance condition.
+   * @return the number of entries in the subtree
+   */
+  private static int checkSubtree(ArrayAVLTreeMap map, int p, int parent, long lo, long hi) {
+    if (p == ArrayAVLTreeMap.NIL) return 0;
+    int key = map.key[p];
+    assertTrue("key " + key + " out of order", lo < key && key < hi);
+    assertEquals("parent of " + key, parent, map.parent[p]);
+    int left = map.left[p], right = map.right[p];
+    int count = 1 + checkSubtree(map, left, p, lo, key) + checkSubtree(map, right, p, key, hi);
+    int leftHeight = (left == ArrayAVLTreeMap.NIL ? 0 : map.height[left]);
+    int rightHeight = (right == ArrayAVLTreeMap.NIL ? 0 : map.height[right]);
+    assertTrue("unbalanced at " + key, Math.abs(leftHeight - rightHeight) <= 1);
+    assertEquals("height of " + key, 1 + Math.max(leftHeight, rightHeight), map.height[p]);
+    return count;
+  }
+
+  /** Asserts that the tree of map is a valid AVL tree holding size() entries. */
+  private static void assertValidTree(ArrayAVLTreeMap map) {
+    assertEquals("entries", map.size(),
+                 checkSubtree(map, map.root, ArrayAVLTreeMap.NIL, Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  /** Asserts that putting c fails because its name is too long to encode. */
+  private static void assertRejected(OffHeapAVLTreeMap map, County c) {
+    try {
+      map.put(c.getCountyCode(), c);
+      fail("name of " + c.getCountyName().length() + " bytes was stored");
+    } catch (IllegalArgumentException expected) {
+      // the map must be left as it was
+    }
+  }
+
+  @Test
+  public void storeReadsBackRecords() {
+    OffHeapCountyStore store = new OffHeapCountyStore(1 << 16);
+    long[] handles = new long[5000];
+    for (int i = 0; i < handles.length; i++)                 // spans several chunks
+      handles[i] = store.add(new County(i, 7 * i, i % 10 == 0 ? null : "County " + i));
+    for (int i = 0; i < handles.length; i++) {
+      assertCounty("record " + i, new County(i, 7 * i, i % 10 == 0 ? null : "County " + i),
+                   store.get(handles[i]));
+      assertEquals(i, store.getCountyCode(handles[i]));
+      assertEquals(7 * i, store.getPopulation(handles[i]));
+    }
+    assertEquals(OffHeapCountyStore.NULL, store.add(null));
+    assertNull(store.get(OffHeapCountyStore.NULL));
+  }
+
+  @Test
+  public void freedBytesAreCountedAndCopiesSurvive() {
+    OffHeapCountyStore store = new OffHeapCountyStore();
+    long a = store.add(county(1, 1));
+    long b = store.add(county(2, 2));
+    long used = store.getUsedBytes();
+    store.free(a);
+    assertEquals(CountyCodec.encodedSize(county(1, 1)), store.getFreedBytes());
+    OffHeapCountyStore fresh = new OffHeapCountyStore();
+    long copy = fresh.copy(store, b);
+    assertCounty("copy", county(2, 2), fresh.get(copy));
+    assertEquals(used - store.getFreedBytes(), fresh.getUsedBytes());
+  }
+
+  @Test
+  public void rejectedPutLeavesMapUnchanged() {
+    char[] chars = new char[Short.MAX_VALUE + 1];
+    java.util.Arrays.fill(chars, 'x');
+    String name = new String(chars);
+    OffHeapAVLTreeMap map = new OffHeapAVLTreeMap(4);
+    assertRejected(map, new County(500, 1, name));          // would be the root
+    assertTrue(map.isEmpty());
+    assertNull(map.get(500));
+
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int code = 0; code < 1000; code += 10) {
+      map.put(code, county(code, code));
+      ref.put(code, county(code, code));
+    }
+    assertValidTree(map);
+    for (int code = -5; code < 1010; code += 10)             // new leaves all over the tree
+      assertRejected(map, new County(code, 1, name));
+    assertRejected(map, new County(500, 1, name));          // replacing an entry
+    assertEquals(ref.size(), map.size());
+    assertNull(map.get(5));
+    assertCounty("kept", ref.get(500), map.get(500));
+    assertValidTree(map);
+    assertEntries("after rejected puts", ref, map.entrySet());
+
+    for (int code = 5; code < 1000; code += 10) {           // the slots are reused
+      map.put(code, county(code, code));
+      ref.put(code, county(code, code));
+    }
+    assertValidTree(map);
+    assertEntries("after more puts", ref, map.entrySet());
+  }
+
+  @Test
+  public void negativePopulationsAreNotMissing() {
+    OffHeapAVLTreeMap map = new OffHeapAVLTreeMap();
+    map.put(6001, new County(6001, -1, "Alameda, CA"));
+    map.put(6003, null);
+    assertEquals(-1, map.getPopulation(6001));
+    assertEquals(OffHeapAVLTreeMap.NO_POPULATION, map.getPopulation(6003));
+    assertEquals(OffHeapAVLTreeMap.NO_POPULATION, map.getPopulation(6005));
+  }
+
+  @Test
+  public void compactionKeepsLiveRecords() {
+    OffHeapAVLTreeMap map = new OffHeapAVLTreeMap();
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int round = 0; round < 5; round++)
+      for (int code = 0; code < 2000; code++) {
+        County c = county(code, round);
+        map.put(code, c);                                   // replaced records become garbage
+        ref.put(code, c);
+      }
+    for (int code = 0; code < 2000; code += 2) {
+      map.remove(code);
+      ref.remove(code);
+    }
+    long live = map.getOffHeapBytes();
+    map.compact();
+    assertEquals(live, map.getOffHeapBytes());
+    assertEntries("after compaction", ref, map.entrySet());
+    assertEquals(4, map.getPopulation(1));
+    assertEquals(OffHeapAVLTreeMap.NO_POPULATION, map.getPopulation(0));
+    assertTrue(live > 0);
+  }
+}
@@ -0,0 +1,163 @@
+package countydb;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Performance-regression thresholds for the hot paths.
+ *
+ * The structural checks (comparisons per search, rotations per insert) are
+ * deterministic and always hold for a correct AVL tree. The timing checks
+ * take the best of several runs, and their limits are generous enough for
+ * a loaded build machine: they catch a change that makes an operation many
+ * times slower, not small drifts, which the JMH suite in the bench module
+ * measures. Every time limit is multiplied by the system property
+ * countydb.perf.scale (default 1), and -Dcountydb.perf.skip=true skips the
+ * timing checks altogether.
+ */
+public class PerformanceRegressionTest {
+
+  private static final int RECORDS = 100000;
+  private static final int RUNS = 10;
+
+  private static final double SCALE =
+      Double.parseDouble(System.getProperty("countydb.perf.scale", "1"));
+
+  /** Limits, in nanoseconds per operation, before scaling. */
+  private static final double GET_NANOS = 2000;
+  private static final double PUT_NANOS = 4000;
+  private static final double BULK_LOAD_NANOS = 3000;
+  private static final double SNAPSHOT_READ_NANOS = 2000;
+  private static final double LOADER_NANOS = 2000;
+
+  private int[] codes;
+  private County[] counties;
+
+  @Before
+  public void createRecords() {
+    Random random = new Random(91);
+    codes = new int[RECORDS];
+    counties = new County[RECORDS];
+    for (int i = 0; i < RECORDS; i++) {
+      codes[i] = random.nextInt(100000000);
+      counties[i] = new County(codes[i], i, "County " + codes[i]);
+    }
+  }
+
+  private static void assumeTimed() {
+    Assume.assumeTrue("timing checks skipped", !Boolean.getBoolean("countydb.perf.skip"));
+  }
+
+  /** Asserts that the best of the measured runs is within the scaled limit. */
+  private static void assertWithin(String what, double limitNanos, long bestNanos, int ops) {
+    double perOp = (double) bestNanos / ops;
+    assertTrue(String.format("%s took %.0f ns/op, limit %.0f", what, perOp, limitNanos * SCALE),
+               perOp <= limitNanos * SCALE);
+  }
+
+  private AVLTreeMap filledMap() {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int i = 0; i < RECORDS; i++)
+      map.put(codes[i], counties[i]);
+    return map;
+  }
+
+  @Test
+  public void searchesCompareLogarithmicallyManyKeys() {
+    AVLTreeMap map = new AVLTreeMap();
+    for (int code = 0; code < RECORDS; code++)         // sorted: the worst case of a plain BST
+      map.put(code, new County(code, code, null));
+    map.setStatsEnabled(true);
+    Random random = new Random(92);
+    for (int i = 0; i < RECORDS; i++)
+      map.get(random.nextInt(RECORDS));
+    double perGet = (double) map.getStats().getComparisons() / RECORDS;
+    double bound = 1.45 * Math.log(RECORDS) / Math.log(2) + 2;       // AVL height bound
+    assertTrue("comparisons per get " + perGet + " > " + bound, perGet <= bound);
+  }
+
+  @Test
+  public void insertsRotateAtMostOncePerPut() {
+    AVLTreeMap map = new AVLTreeMap();
+    map.setStatsEnabled(true);
+    for (int i = 0; i < RECORDS; i++)
+      map.put(codes[i], counties[i]);
+    double perPut = (double) map.getStats().getRotations() / RECORDS;
+    assertTrue("rotations per put " + perPut, perPut <= 2.0);  // one single or double rotation
+  }
+
+  @Test
+  public void getAndPutStayFast() {
+    assumeTimed();
+    long bestPut = Long.MAX_VALUE, bestGet = Long.MAX_VALUE, bestGetAll = Long.MAX_VALUE;
+    County[] results = new County[RECORDS];
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      AVLTreeMap map = filledMap();
+      bestPut = Math.min(bestPut, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      int hits = 0;
+      for (int i = RECORDS - 1; i >= 0; i--)
+        if (map.get(codes[i]) != null) hits++;
+      bestGet = Math.min(bestGet, System.nanoTime() - start);
+      assertTrue(hits == RECORDS);
+
+      start = System.nanoTime();
+      map.getAll(codes, results);
+      bestGetAll = Math.min(bestGetAll, System.nanoTime() - start);
+    }
+    assertWithin("AVLTreeMap.put", PUT_NANOS, bestPut, RECORDS);
+    assertWithin("AVLTreeMap.get", GET_NANOS, bestGet, RECORDS);
+    assertWithin("AVLTreeMap.getAll", GET_NANOS, bestGetAll, RECORDS);
+  }
+
+  @Test
+  public void bulkLoadStaysFast() {
+    assumeTimed();
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      AVLTreeMap.bulkLoad(counties);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    assertWithin("AVLTreeMap.bulkLoad", BULK_LOAD_NANOS, best, RECORDS);
+  }
+
+  @Test
+  public void snapshotAndLoaderStayFast() throws IOException {
+    assumeTimed();
+    Path snap = Files.createTempFile("countydb", ".snap");
+    Path text = Files.createTempFile("countydb", ".txt");
+    try {
+      new CountySnapshot().write(AVLTreeMap.bulkLoad(counties), snap);
+      StringBuilder lines = new StringBuilder();
+      for (County c : counties)
+        lines.append(c.getCountyCode()).append(',').append(c.getPopulation())
+             .append(",\"").append(c.getCountyName()).append("\"\n");
+      Files.write(text, lines.toString().getBytes("UTF-8"));
+
+      long bestSnapshot = Long.MAX_VALUE, bestLoader = Long.MAX_VALUE;
+      for (int run = 0; run < RUNS; run++) {
+        CountySnapshot snapshot = new CountySnapshot();
+        snapshot.read(snap);
+        bestSnapshot = Math.min(bestSnapshot, snapshot.getElapsedNanos());
+        CountyLoader loader = new CountyLoader();
+        loader.load(text, c -> { });
+        bestLoader = Math.min(bestLoader, loader.getElapsedNanos());
+      }
+      assertWithin("CountySnapshot.read", SNAPSHOT_READ_NANOS, bestSnapshot, RECORDS);
+      assertWithin("CountyLoader.load", LOADER_NANOS, bestLoader, RECORDS);
+    } finally {
+      Files.deleteIfExists(snap);
+      Files.deleteIfExists(text);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.county;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+/** Snapshots and concurrent updates of PersistentAVLTreeMap. */
+public class PersistentAVLTreeMapTest {
+
+  @Test
+  public void snapshotsAreIndependent() {
+    PersistentAVLTreeMap map = new PersistentAVLTreeMap();
+    for (int code = 0; code < 100; code++)
+      map.put(code, county(code, 0));
+    PersistentAVLTreeMap snapshot = map.snapshot();
+    map.remove(5);
+    map.put(200, county(200, 0));
+    snapshot.put(5, county(5, 1));
+    assertEquals(100, map.size());
+    assertNull(map.get(5));
+    assertEquals(100, snapshot.size());
+    assertCounty("snapshot", county(5, 1), snapshot.get(5));
+    assertNull(snapshot.get(200));
+  }
+
+  @Test
+  public void concurrentWritersLoseNoUpdates() throws InterruptedException {
+    PersistentAVLTreeMap map = new PersistentAVLTreeMap();
+    int threads = 4, perThread = 5000;
+    CountDownLatch start = new CountDownLatch(1);
+    Thread[] writers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      int first = t;
+      writers[t] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perThread; i++) {              // interleaved keys contend on paths
+          int code = i * threads + first;
+          map.put(code, county(code, i));
+          if (i % 3 == 0)
+            map.remove(code);
+        }
+      });
+      writers[t].start();
+    }
+    start.countDown();
+    for (Thread w : writers)
+      w.join();
+    int expected = 0;
+    for (int code = 0; code < threads * perThread; code++) {
+      int i = code / threads;
+      if (i % 3 == 0)
+        assertNull("removed " + code, map.get(code));
+      else {
+        assertCounty("kept " + code, county(code, i), map.get(code));
+        expected++;
+      }
+    }
+    assertEquals(expected, map.size());
+  }
+}
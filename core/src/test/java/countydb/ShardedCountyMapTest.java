@@ -0,0 +1,66 @@
+package countydb;
+
+import static countydb.CountyAssert.county;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Assume;
+import org.junit.Test;
+
+/** Routing of keys to the shards of ShardedCountyMap. */
+public class ShardedCountyMapTest {
+
+  /** Asserts that the odd county codes of every state spread evenly over the shards. */
+  private static void assertSpread(ShardedCountyMap map) {
+    int shards = map.getShardCount();
+    int[] counts = new int[shards];
+    int keys = 0;
+    for (int state = 1; state <= 56; state++)
+      for (int county = 1; county < 200; county += 2) {       // FIPS county codes are odd
+        counts[map.shardOf(state * 1000 + county)]++;
+        keys++;
+      }
+    double mean = (double) keys / shards;
+    double slack = 4 * Math.sqrt(mean);                        // four standard deviations
+    for (int s = 0; s < shards; s++)
+      assertTrue(shards + " shards: shard " + s + " holds " + counts[s] + " keys, mean " + mean,
+                 Math.abs(counts[s] - mean) <= slack);
+  }
+
+  @Test
+  public void hashSpreadsOddCodesOverPowerOfTwoShards() {
+    for (int shards = 2; shards <= 64; shards *= 2)
+      assertSpread(ShardedCountyMap.hashed(shards));
+  }
+
+  @Test
+  public void hashSpreadsOddCodesOverOtherShardCounts() {
+    for (int shards : new int[] {3, 7, 10, 12})
+      assertSpread(ShardedCountyMap.hashed(shards));
+  }
+
+  @Test
+  public void sampleFileUsesEveryHashShard() throws IOException {
+    Path sample = Paths.get("../p4small.txt");
+    Assume.assumeTrue("sample file present", sample.toFile().exists());
+    ShardedCountyMap map = ShardedCountyMap.hashed(4);
+    boolean[] used = new boolean[4];
+    new CountyLoader().load(sample, c -> used[map.shardOf(c.getCountyCode())] = true);
+    for (int s = 0; s < used.length; s++)
+      assertTrue("shard " + s + " receives sample counties", used[s]);
+  }
+
+  @Test
+  public void stateRoutingKeepsStatesTogether() {
+    ShardedCountyMap map = new ShardedCountyMap();
+    assertEquals(6, map.shardOf(6001));
+    assertEquals(6, map.shardOf(6999));
+    assertEquals(72, map.shardOf(72001));
+    map.put(6001, county(6001, 1));
+    map.put(72001, county(72001, 1));
+    assertEquals(Integer.valueOf(72001), map.lastEntry().getKey());
+  }
+}
@@ -0,0 +1,104 @@
+package countydb;
+
+import static countydb.CountyAssert.assertCounty;
+import static countydb.CountyAssert.assertEntries;
+import static countydb.CountyAssert.assertEntry;
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Runs the same random sequence of puts, removes and gets against every
+ * SortedMap implementation and a java.util.TreeMap, comparing each result,
+ * and periodically compares the navigation and range queries as well.
+ */
+public class SortedMapDifferentialTest {
+
+  private static final int OPERATIONS = 20000;
+  private static final int CHECK_EVERY = 2000;
+
+  @Test public void treeMap() { check(new TreeMap(), 1); }
+
+  @Test public void avlTreeMap() { check(new AVLTreeMap(), 2); }
+
+  @Test public void augmentedAVLTreeMap() { check(new AugmentedAVLTreeMap(), 3); }
+
+  @Test public void indexedAVLTreeMap() { check(new IndexedAVLTreeMap(), 4); }
+
+  @Test public void intAVLTreeMap() { check(new IntAVLTreeMap(), 5); }
+
+  @Test public void arrayAVLTreeMap() { check(new ArrayAVLTreeMap(16), 6); }
+
+  @Test public void offHeapAVLTreeMap() { check(new OffHeapAVLTreeMap(16), 7); }
+
+  @Test public void persistentAVLTreeMap() { check(new PersistentAVLTreeMap(), 8); }
+
+  @Test public void concurrentAVLTreeMap() { check(new ConcurrentAVLTreeMap(), 9); }
+
+  @Test public void shardedByState() { check(new ShardedCountyMap(), 10); }
+
+  @Test public void shardedByHash() { check(ShardedCountyMap.hashed(8), 11); }
+
+  @Test public void concurrentSkipList() { check(new ConcurrentSkipListCountyMap(), 12); }
+
+  @Test
+  public void everyBackend() {
+    for (MapBackend backend : MapBackend.values())
+      check(backend.create(), 13 + backend.ordinal());
+  }
+
+  /** Applies random operations to map and to a reference map, comparing every result. */
+  static void check(SortedMap map, long seed) {
+    Random random = new Random(seed);
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    String name = map.getClass().getSimpleName();
+    for (int op = 1; op <= OPERATIONS; op++) {
+      int code = randomCode(random);
+      int choice = random.nextInt(10);
+      if (choice < 6) {
+        County c = county(code, op);
+        assertCounty(name + " put " + code, ref.put(code, c), map.put(code, c));
+      } else if (choice < 9)
+        assertCounty(name + " remove " + code, ref.remove(code), map.remove(code));
+      else
+        assertCounty(name + " get " + code, ref.get(code), map.get(code));
+      if (op % CHECK_EVERY == 0)
+        checkQueries(name, map, ref, random);
+    }
+    while (!ref.isEmpty()) {                     // empty the map again
+      int code = ref.firstKey();
+      assertCounty(name + " remove " + code, ref.remove(code), map.remove(code));
+    }
+    checkQueries(name, map, ref, random);
+    assertTrue(name + " is empty", map.isEmpty());
+  }
+
+  /** Compares the size, iteration, navigation and range queries of map and ref. */
+  static void checkQueries(String name, SortedMap map, java.util.TreeMap<Integer, County> ref,
+                           Random random) {
+    assertEquals(name + " size", ref.size(), map.size());
+    assertEntries(name + " entrySet", ref, map.entrySet());
+    assertEntry(name + " firstEntry", ref.firstEntry(), map.firstEntry());
+    assertEntry(name + " lastEntry", ref.lastEntry(), map.lastEntry());
+    for (int i = 0; i < 50; i++) {
+      int key = (i == 0 ? 0 : i == 1 ? 100000 : randomCode(random));
+      assertEntry(name + " ceilingEntry " + key, ref.ceilingEntry(key), map.ceilingEntry(key));
+      assertEntry(name + " floorEntry " + key, ref.floorEntry(key), map.floorEntry(key));
+      assertEntry(name + " lowerEntry " + key, ref.lowerEntry(key), map.lowerEntry(key));
+      assertEntry(name + " higherEntry " + key, ref.higherEntry(key), map.higherEntry(key));
+    }
+    for (int i = 0; i < 20; i++) {
+      int from = randomCode(random);
+      int to = (i % 5 == 0 ? from - random.nextInt(3) : from + random.nextInt(20000));
+      java.util.NavigableMap<Integer, County> range =
+          (from < to ? ref.subMap(from, true, to, false) : new java.util.TreeMap<>());
+      assertEntries(name + " subMap " + from + ".." + to, range, map.subMap(from, to));
+      assertEntries(name + " descendingSubMap " + from + ".." + to,
+                    range.descendingMap(), map.descendingSubMap(from, to));
+    }
+  }
+}
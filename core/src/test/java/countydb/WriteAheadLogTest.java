@@ -0,0 +1,213 @@
+package countydb;
+
+import static countydb.CountyAssert.assertEntries;
+import static countydb.CountyAssert.county;
+import static countydb.CountyAssert.randomCode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trips through WriteAheadLog: logged changes replayed from a reopened
+ * log must rebuild the same map, and a damaged tail must be cut off.
+ */
+public class WriteAheadLogTest {
+
+  private Path file;
+
+  @Before
+  public void createFile() throws IOException {
+    file = Files.createTempFile("countydb", ".wal");
+  }
+
+  @After
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /** Logs random changes, applying them to ref too, and returns the number logged. */
+  private static int logChanges(WriteAheadLog log, java.util.TreeMap<Integer, County> ref,
+                                long seed, int count) throws IOException {
+    Random random = new Random(seed);
+    for (int i = 0; i < count; i++) {
+      int code = randomCode(random);
+      if (random.nextInt(4) == 0) {
+        log.logRemove(code);
+        ref.remove(code);
+      } else {
+        County c = (i % 50 == 0 ? new County(code, i, null) : county(code, i));
+        log.logPut(c);
+        ref.put(code, c);
+      }
+    }
+    return count;
+  }
+
+  private void roundTrip(WriteAheadLog.SyncPolicy policy) throws IOException {
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    try (WriteAheadLog log = new WriteAheadLog(file, policy, 5)) {
+      assertEquals(1000, logChanges(log, ref, 51, 1000));
+      assertEquals(1000, log.getRecordCount());
+    }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, policy, 5)) {
+      assertEquals(1000, log.replay(map));
+    }
+    assertEntries("replayed " + policy, ref, map.entrySet());
+  }
+
+  @Test
+  public void replaysEveryOpLog() throws IOException { roundTrip(WriteAheadLog.SyncPolicy.EVERY_OP); }
+
+  @Test
+  public void replaysBatchedLog() throws IOException { roundTrip(WriteAheadLog.SyncPolicy.BATCHED); }
+
+  @Test
+  public void appendsAfterReopening() throws IOException {
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      logChanges(log, ref, 52, 300);
+    }
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      logChanges(log, ref, 53, 300);
+    }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      assertEquals(600, log.replay(map));
+    }
+    assertEntries("two sessions", ref, map.entrySet());
+  }
+
+  @Test
+  public void concurrentWritersAreAllLogged() throws Exception {
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      Thread[] writers = new Thread[4];
+      for (int t = 0; t < writers.length; t++) {
+        int base = 1000 * (t + 1);
+        writers[t] = new Thread(() -> {
+          try {
+            for (int i = 0; i < 200; i++)
+              log.logPut(county(base + i, i));
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        });
+        writers[t].start();
+      }
+      for (Thread w : writers)
+        w.join();
+      assertTrue("fsyncs are shared", log.getSyncCount() <= log.getRecordCount());
+    }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      assertEquals(800, log.replay(map));
+    }
+    assertEquals(800, map.size());
+  }
+
+  @Test
+  public void cutsOffTornTail() throws IOException {
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      logChanges(log, ref, 54, 100);
+    }
+    long intact = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+      ByteBuffer torn = ByteBuffer.allocate(12);
+      torn.putInt(40).putInt(12345).putInt(6001).flip();   // a record cut short by a crash
+      channel.write(torn);
+    }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      assertEquals("torn tail removed", intact, Files.size(file));
+      assertEquals(100, log.replay(map));
+      log.logRemove(ref.firstKey());                     // appended after the intact records
+      ref.remove(ref.firstKey());
+    }
+    map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      assertEquals(101, log.replay(map));
+    }
+    assertEntries("after torn tail", ref, map.entrySet());
+  }
+
+  @Test
+  public void stopsAtCorruptedRecord() throws IOException {
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      for (int i = 0; i < 10; i++)
+        log.logPut(county(6000 + i, i));
+    }
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length - 3] ^= 0x55;                     // damage the last record
+    Files.write(file, bytes);
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0)) {
+      assertEquals(9, log.replay(map));
+    }
+    assertEquals(9, map.size());
+  }
+
+  private void replayAfterRejectedPut(WriteAheadLog.SyncPolicy policy) throws IOException {
+    char[] name = new char[Short.MAX_VALUE + 1];
+    java.util.Arrays.fill(name, 'x');
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    try (WriteAheadLog log = new WriteAheadLog(file, policy, 5)) {
+      logChanges(log, ref, 55, 100);
+      try {
+        log.logPut(new County(6001, 1, new String(name)));
+        throw new AssertionError("name of " + name.length + " bytes was logged");
+      } catch (IllegalArgumentException expected) {
+        // nothing must be left in the log
+      }
+      assertEquals(100, log.getRecordCount());
+      logChanges(log, ref, 56, 100);
+    }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, policy, 5)) {
+      assertEquals(200, log.replay(map));
+    }
+    assertEntries("after rejected put " + policy, ref, map.entrySet());
+  }
+
+  @Test
+  public void replaysEveryOpLogAfterRejectedPut() throws IOException {
+    replayAfterRejectedPut(WriteAheadLog.SyncPolicy.EVERY_OP);
+  }
+
+  @Test
+  public void replaysBatchedLogAfterRejectedPut() throws IOException {
+    replayAfterRejectedPut(WriteAheadLog.SyncPolicy.BATCHED);
+  }
+
+  @Test
+  public void closeWaitsForBackgroundFlushes() throws IOException {
+    java.util.TreeMap<Integer, County> ref = new java.util.TreeMap<>();
+    for (int session = 0; session < 20; session++)
+      try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.BATCHED, 1)) {
+        logChanges(log, ref, 60 + session, 50);
+      }
+    AVLTreeMap map = new AVLTreeMap();
+    try (WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.BATCHED, 1)) {
+      assertEquals(1000, log.replay(map));
+    }
+    assertEntries("twenty sessions", ref, map.entrySet());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsChangesAfterClose() throws IOException {
+    WriteAheadLog log = new WriteAheadLog(file, WriteAheadLog.SyncPolicy.EVERY_OP, 0);
+    log.close();
+    log.logRemove(6001);
+  }
+}
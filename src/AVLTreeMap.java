@@ -1,121 +0,0 @@
-/*
- * Copyright 2014, Michael T. Goodrich, Roberto Tamassia, Michael H. Goldwasser
- *
- * Developed for use with the book:
- *
- *    Data Structures and Algorithms in Java, Sixth Edition
- *    Michael T. Goodrich, Roberto Tamassia, and Michael H. Goldwasser
- *    John Wiley & Sons, 2014
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-
-import java.util.Comparator;
-
-/**
- * An implementation of a sorted map using an AVL tree.
- *
- * @author Eric Zamore
- * @author Michael T. Goodrich
- * @author Roberto Tamassia
- * @author Michael H. Goldwasser
- */
-public class AVLTreeMap extends TreeMap {
-
-  /** Constructs an empty map using the natural ordering of keys. */
-  public AVLTreeMap() { super(); }
-
-  /**
-   * Constructs an empty map using the given comparator to order keys.
-   * @param comp comparator defining the order of keys in the map
-   */
-  public AVLTreeMap(Comparator comp) { super(comp); }
-
-  /** Returns the height of the given tree position. */
-  protected int height(Position p) {
-    return tree.getAux(p);
-  }
-
-  /** Recomputes the height of the given position based on its children's heights. */
-  protected void recomputeHeight(Position p) {
-    tree.setAux(p, 1 + Math.max(height(left(p)), height(right(p))));
-  }
-
-  /** Returns whether a position has balance factor between -1 and 1 inclusive. */
-  protected boolean isBalanced(Position p) {
-    return Math.abs(height(left(p)) - height(right(p))) <= 1;
-  }
-
-  /** Returns a child of p with height no smaller than that of the other child. */
-  protected Position tallerChild(Position p) {
-    if (height(left(p)) > height(right(p))) return left(p);     // clear winner
-    if (height(left(p)) < height(right(p))) return right(p);    // clear winner
-    // equal height children; break tie while matching parent's orientation
-    if (isRoot(p)) return left(p);                 // choice is irrelevant
-    if (p == left(parent(p))) return left(p);      // return aligned child
-    else return right(p);
-  }
-
-  /**
-   * Utility used to rebalance after an insert or removal operation. This traverses the
-   * path upward from p, performing a trinode restructuring when imbalance is found,
-   * continuing until balance is restored.
-   */
-  protected void rebalance(Position p) {
-    int oldHeight, newHeight;
-    do {
-      oldHeight = height(p);                       // not yet recalculated if internal
-      if (!isBalanced(p)) {                        // imbalance detected
-        // perform trinode restructuring, setting p to resulting root,
-        // and recompute new local heights after the restructuring
-        p = restructure(tallerChild(tallerChild(p)));
-        recomputeHeight(left(p));
-        recomputeHeight(right(p));
-      }
-      recomputeHeight(p);
-      newHeight = height(p);
-      p = parent(p);
-    } while (oldHeight != newHeight && p != null);
-  }
-
-  /** Overrides the TreeMap rebalancing hook that is called after an insertion. */
-  @Override
-  protected void rebalanceInsert(Position p) {
-    rebalance(p);
-  }
-
-  /** Overrides the TreeMap rebalancing hook that is called after a deletion. */
-  @Override
-  protected void rebalanceDelete(Position p) {
-    if (!isRoot(p))
-      rebalance(parent(p));
-  }
-
-  /** Ensure that current tree structure is valid AVL (for debug use only). */
-  private boolean sanityCheck() {
-    for (Position p : tree.positions()) {
-      if (isInternal(p)) {
-        if (p.getElement() == null)
-          System.out.println("VIOLATION: Internal node has null entry");
-        else if (height(p) != 1 + Math.max(height(left(p)), height(right(p)))) {
-          System.out.println("VIOLATION: AVL unbalanced node with key " + p.getElement().getKey());
-          dump();
-          return false;
-        }
-      }
-    }
-    return true;
-  }
-
-}